@@ -0,0 +1,36 @@
+package com.mick.chatopapi.configuration;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.List;
+
+@Configuration
+@EnableCaching
+public class CacheConfiguration {
+
+    public static final String RENTALS_CACHE = "rentals";
+
+    private final RentalCacheProperties rentalCacheProperties;
+
+    public CacheConfiguration(RentalCacheProperties rentalCacheProperties) {
+        this.rentalCacheProperties = rentalCacheProperties;
+    }
+
+    @Bean
+    public CacheManager cacheManager() {
+        CaffeineCacheManager cacheManager = new CaffeineCacheManager();
+        cacheManager.setCaffeine(Caffeine.newBuilder()
+                .maximumSize(rentalCacheProperties.getMaxSize())
+                .expireAfterWrite(rentalCacheProperties.getTtl())
+                .recordStats());
+        // Declared up front so the actuator binds hit/miss/eviction metrics at startup
+        cacheManager.setCacheNames(List.of(RENTALS_CACHE));
+        cacheManager.setAllowNullValues(false);
+        return cacheManager;
+    }
+}
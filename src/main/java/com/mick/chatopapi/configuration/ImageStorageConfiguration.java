@@ -0,0 +1,48 @@
+package com.mick.chatopapi.configuration;
+
+import com.mick.chatopapi.image.storage.ImageStorage;
+import com.mick.chatopapi.image.storage.InMemoryImageStorage;
+import com.mick.chatopapi.image.storage.LocalImageStorage;
+import com.mick.chatopapi.image.storage.S3ImageStorage;
+import com.mick.chatopapi.image.storage.WriteBehindImageStorage;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.net.URI;
+import java.nio.file.Paths;
+
+@Configuration
+public class ImageStorageConfiguration {
+
+    private final ImageStorageProperties imageStorageProperties;
+
+    public ImageStorageConfiguration(ImageStorageProperties imageStorageProperties) {
+        this.imageStorageProperties = imageStorageProperties;
+    }
+
+    @Bean
+    public ImageStorage imageStorage(@Value("${spring.servlet.multipart.location}") String uploadDir,
+                                     ObjectProvider<MeterRegistry> meterRegistry) {
+        return switch (imageStorageProperties.getType()) {
+            case LOCAL -> new LocalImageStorage(Paths.get(uploadDir));
+            case MEMORY -> new InMemoryImageStorage();
+            case S3 -> {
+                ImageStorageProperties.S3 s3 = imageStorageProperties.getS3();
+                ImageStorage bucket = new S3ImageStorage(URI.create(s3.getEndpoint()), s3.getRegion(),
+                        s3.getBucket(), s3.getKeyPrefix(), s3.getAccessKey(), s3.getSecretKey());
+                // Local writes are already durable once moved into place; only a remote store benefits from staging
+                ImageStorageProperties.WriteBehind writeBehind = imageStorageProperties.getWriteBehind();
+                if (!writeBehind.isEnabled()) {
+                    yield bucket;
+                }
+                yield new WriteBehindImageStorage(bucket, Paths.get(writeBehind.getStagingDir()),
+                        writeBehind.getWorkers(), writeBehind.getRetryInterval(),
+                        meterRegistry.getIfAvailable(SimpleMeterRegistry::new));
+            }
+        };
+    }
+}
@@ -0,0 +1,30 @@
+package com.mick.chatopapi.configuration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.util.unit.DataSize;
+
+import java.util.List;
+
+@Configuration
+@ConfigurationProperties(prefix = "chatop.images.upload")
+public class ImageUploadProperties {
+    private DataSize maxSize = DataSize.ofMegabytes(10);
+    private List<String> allowedTypes = List.of("image/jpeg", "image/png", "image/gif", "image/webp");
+
+    public DataSize getMaxSize() {
+        return maxSize;
+    }
+
+    public void setMaxSize(DataSize maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    public List<String> getAllowedTypes() {
+        return allowedTypes;
+    }
+
+    public void setAllowedTypes(List<String> allowedTypes) {
+        this.allowedTypes = allowedTypes;
+    }
+}
@@ -0,0 +1,54 @@
+package com.mick.chatopapi.configuration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+@Configuration
+@ConfigurationProperties(prefix = "chatop.security.jwt-signing")
+public class JwtSigningProperties {
+    private SigningAlgorithm algorithm = SigningAlgorithm.ES256;
+    private Duration rotationInterval = Duration.ofDays(1);
+    private Duration retention = Duration.ofDays(2);
+    private Duration refreshInterval = Duration.ofMinutes(1);
+
+    public enum SigningAlgorithm {
+        // The keystore key, never rotated by the application
+        RS256,
+        // A P-256 key generated by each node and rotated every rotation interval
+        ES256
+    }
+
+    public SigningAlgorithm getAlgorithm() {
+        return algorithm;
+    }
+
+    public void setAlgorithm(SigningAlgorithm algorithm) {
+        this.algorithm = algorithm;
+    }
+
+    public Duration getRotationInterval() {
+        return rotationInterval;
+    }
+
+    public void setRotationInterval(Duration rotationInterval) {
+        this.rotationInterval = rotationInterval;
+    }
+
+    public Duration getRetention() {
+        return retention;
+    }
+
+    public void setRetention(Duration retention) {
+        this.retention = retention;
+    }
+
+    public Duration getRefreshInterval() {
+        return refreshInterval;
+    }
+
+    public void setRefreshInterval(Duration refreshInterval) {
+        this.refreshInterval = refreshInterval;
+    }
+}
@@ -0,0 +1,56 @@
+package com.mick.chatopapi.configuration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+@Configuration
+@ConfigurationProperties(prefix = "chatop.messages.archive")
+public class MessageArchiveProperties {
+    private boolean enabled = true;
+    private Duration age = Duration.ofDays(90);
+    private Duration interval = Duration.ofHours(1);
+    private int chunkSize = 1000;
+    private Duration chunkPause = Duration.ofMillis(100);
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public Duration getAge() {
+        return age;
+    }
+
+    public void setAge(Duration age) {
+        this.age = age;
+    }
+
+    public Duration getInterval() {
+        return interval;
+    }
+
+    public void setInterval(Duration interval) {
+        this.interval = interval;
+    }
+
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    public void setChunkSize(int chunkSize) {
+        this.chunkSize = chunkSize;
+    }
+
+    public Duration getChunkPause() {
+        return chunkPause;
+    }
+
+    public void setChunkPause(Duration chunkPause) {
+        this.chunkPause = chunkPause;
+    }
+}
@@ -0,0 +1,38 @@
+package com.mick.chatopapi.configuration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+@Configuration
+@ConfigurationProperties(prefix = "chatop.messages.counters")
+public class MessageCounterProperties {
+    private Duration flushInterval = Duration.ofSeconds(1);
+    private Duration refreshInterval = Duration.ofSeconds(30);
+    private int maxIdleEntries = 100_000;
+
+    public Duration getFlushInterval() {
+        return flushInterval;
+    }
+
+    public void setFlushInterval(Duration flushInterval) {
+        this.flushInterval = flushInterval;
+    }
+
+    public Duration getRefreshInterval() {
+        return refreshInterval;
+    }
+
+    public void setRefreshInterval(Duration refreshInterval) {
+        this.refreshInterval = refreshInterval;
+    }
+
+    public int getMaxIdleEntries() {
+        return maxIdleEntries;
+    }
+
+    public void setMaxIdleEntries(int maxIdleEntries) {
+        this.maxIdleEntries = maxIdleEntries;
+    }
+}
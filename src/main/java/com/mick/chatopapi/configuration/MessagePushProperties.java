@@ -0,0 +1,58 @@
+package com.mick.chatopapi.configuration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+@Configuration
+@ConfigurationProperties(prefix = "chatop.messages.push")
+public class MessagePushProperties {
+
+    /**
+     * What to do when a subscriber reads slower than messages arrive and its buffer is full.
+     */
+    public enum OverflowPolicy {
+        /** Drop the oldest buffered event to make room for the new one. */
+        DROP_OLDEST,
+        /** Close the stream; the client reconnects and catches up from the message history. */
+        DISCONNECT
+    }
+
+    private int bufferSize = 64;
+    private OverflowPolicy overflowPolicy = OverflowPolicy.DISCONNECT;
+    private Duration heartbeatInterval = Duration.ofSeconds(15);
+    private Duration timeout = Duration.ofMinutes(30);
+
+    public int getBufferSize() {
+        return bufferSize;
+    }
+
+    public void setBufferSize(int bufferSize) {
+        this.bufferSize = bufferSize;
+    }
+
+    public OverflowPolicy getOverflowPolicy() {
+        return overflowPolicy;
+    }
+
+    public void setOverflowPolicy(OverflowPolicy overflowPolicy) {
+        this.overflowPolicy = overflowPolicy;
+    }
+
+    public Duration getHeartbeatInterval() {
+        return heartbeatInterval;
+    }
+
+    public void setHeartbeatInterval(Duration heartbeatInterval) {
+        this.heartbeatInterval = heartbeatInterval;
+    }
+
+    public Duration getTimeout() {
+        return timeout;
+    }
+
+    public void setTimeout(Duration timeout) {
+        this.timeout = timeout;
+    }
+}
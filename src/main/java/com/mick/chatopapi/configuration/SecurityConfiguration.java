@@ -1,11 +1,13 @@
 package com.mick.chatopapi.configuration;
 
+import com.mick.chatopapi.security.CachingJwtDecoder;
 import com.mick.chatopapi.security.CustomAuthenticationEntryPoint;
-import com.nimbusds.jose.jwk.JWKSet;
-import com.nimbusds.jose.jwk.RSAKey;
-import com.nimbusds.jose.jwk.source.ImmutableJWKSet;
-import com.nimbusds.jose.jwk.source.JWKSource;
+import com.mick.chatopapi.security.JwtSigningKeys;
+import com.nimbusds.jose.proc.JWSVerificationKeySelector;
 import com.nimbusds.jose.proc.SecurityContext;
+import com.nimbusds.jwt.proc.DefaultJWTProcessor;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.authentication.AuthenticationManager;
@@ -24,11 +26,6 @@ import org.springframework.security.oauth2.jwt.NimbusJwtEncoder;
 import org.springframework.security.web.AuthenticationEntryPoint;
 import org.springframework.security.web.SecurityFilterChain;
 
-import java.security.PrivateKey;
-import java.security.PublicKey;
-import java.security.interfaces.RSAPrivateKey;
-import java.security.interfaces.RSAPublicKey;
-
 @Configuration
 @EnableWebSecurity
 public class SecurityConfiguration {
@@ -54,6 +51,7 @@ public class SecurityConfiguration {
                         .requestMatchers("/api/auth/login",
                                 "/api/auth/register",
                                 "/api/rentals/image/**",
+                                "/.well-known/jwks.json",
                                 "/swagger-ui/**",
                                 "/v3/api-docs/**",
                                 "/swagger-ui.html")
@@ -66,21 +64,25 @@ public class SecurityConfiguration {
     }
 
     @Bean
-    public JwtEncoder jwtEncoder(PrivateKey privateKey, PublicKey publicKey) {
-        RSAKey rsaKey = new RSAKey.Builder((RSAPublicKey) publicKey)
-                .privateKey((RSAPrivateKey) privateKey)
-                .build();
-
-        JWKSet jwkSet = new JWKSet(rsaKey);
-        JWKSource<SecurityContext> jwkSource = new ImmutableJWKSet<>(jwkSet);
-        return new NimbusJwtEncoder(jwkSource);
+    public JwtEncoder jwtEncoder(JwtSigningKeys jwtSigningKeys) {
+        return new NimbusJwtEncoder(jwtSigningKeys.signingKeySource());
     }
 
     @Bean
-    public JwtDecoder jwtDecoder(PublicKey publicKey) {
-        return NimbusJwtDecoder
-                .withPublicKey((RSAPublicKey) publicKey)
-                .build();
+    public JwtDecoder jwtDecoder(JwtSigningKeys jwtSigningKeys, JwtCacheProperties jwtCacheProperties, MeterRegistry meterRegistry) {
+        DefaultJWTProcessor<SecurityContext> jwtProcessor = new DefaultJWTProcessor<>();
+        jwtProcessor.setJWSKeySelector(new JWSVerificationKeySelector<>(
+                JwtSigningKeys.ALGORITHMS, jwtSigningKeys.verificationKeySource()));
+        // Claims are checked by the decoder's validators
+        jwtProcessor.setJWTClaimsSetVerifier((claims, context) -> {
+        });
+        JwtDecoder decoder = new NimbusJwtDecoder(jwtProcessor);
+        if (!jwtCacheProperties.isEnabled()) {
+            return decoder;
+        }
+        CachingJwtDecoder cachingDecoder = new CachingJwtDecoder(decoder, jwtCacheProperties.getMaxSize());
+        CaffeineCacheMetrics.monitor(meterRegistry, cachingDecoder.getCache(), "jwt");
+        return cachingDecoder;
     }
 
     @Bean
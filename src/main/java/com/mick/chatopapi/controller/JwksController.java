@@ -0,0 +1,63 @@
+package com.mick.chatopapi.controller;
+
+import com.mick.chatopapi.security.JwtSigningKeys;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.ExampleObject;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.Map;
+
+@Tag(name = "JWKS", description = "Public keys to verify the issued tokens")
+@RestController
+public class JwksController {
+
+    private final JwtSigningKeys jwtSigningKeys;
+
+    public JwksController(JwtSigningKeys jwtSigningKeys) {
+        this.jwtSigningKeys = jwtSigningKeys;
+    }
+
+    @Operation(
+        summary = "List the public keys tokens are signed with",
+        description = "Every key a token can currently be verified with, selected by the kid of the token header. "
+                + "Rotated keys stay listed until the tokens they signed have expired.",
+        responses = {
+        @ApiResponse(
+            responseCode = "200",
+            description = "JSON Web Key Set",
+            content = @Content(
+                mediaType = "application/json",
+                examples = {
+                    @ExampleObject(
+                        name = "JwksResponse",
+                        value = """
+                        {
+                          "keys": [
+                            {
+                              "kty": "EC",
+                              "use": "sig",
+                              "crv": "P-256",
+                              "kid": "c2v2Q0Gk0mFQ2m2h6o0S9yq6zW9nqGx3b0bYQmJ8m1M",
+                              "x": "f83OJ3D2xF1Bg8vub9tLe1gHMzV76e8Tus9uPHvRVEU",
+                              "y": "x_FEzRu9m36HLN_tue659LNpXW6pCyStikYjKIWI5a0",
+                              "alg": "ES256"
+                            }
+                          ]
+                        }
+                        """
+                    )
+                }
+            )
+        )
+    })
+    @GetMapping(value = "/.well-known/jwks.json", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<Map<String, Object>> getJwks() {
+        return ResponseEntity.ok(jwtSigningKeys.publicKeys().toJSONObject(true));
+    }
+}
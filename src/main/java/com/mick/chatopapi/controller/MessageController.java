@@ -1,8 +1,11 @@
 package com.mick.chatopapi.controller;
 
 import com.mick.chatopapi.dto.ErrorResponse;
+import com.mick.chatopapi.dto.InboxPageResponse;
+import com.mick.chatopapi.dto.MessageCountsResponse;
 import com.mick.chatopapi.dto.MessageRequestDto;
 import com.mick.chatopapi.dto.SuccessResponse;
+import com.mick.chatopapi.exception.MessageQueueFullException;
 import com.mick.chatopapi.service.MessageService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.media.Content;
@@ -13,14 +16,19 @@ import io.swagger.v3.oas.annotations.security.SecurityRequirement;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
 import org.springframework.context.support.DefaultMessageSourceResolvable;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.validation.BindingResult;
+import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.util.Map;
 
@@ -98,6 +106,26 @@ public class MessageController {
                         )
                     }
                 )
+            ),
+            @ApiResponse(
+                responseCode = "503",
+                description = "Service Unavailable: too many messages are waiting to be saved, retry after the Retry-After delay",
+                content = @Content(
+                    mediaType = "application/json",
+                    schema = @Schema(implementation = ErrorResponse.class),
+                    examples = {
+                        @ExampleObject(
+                            name = "QueueFullResponse",
+                            value = """
+                            {
+                              "error": "SERVICE_UNAVAILABLE",
+                              "status": 503,
+                              "message": "Too many messages are waiting to be saved, please retry later"
+                            }
+                            """
+                        )
+                    }
+                )
             )
         }
     )
@@ -125,6 +153,115 @@ public class MessageController {
             messageService.createMessage(messageRequestDto);
             return ResponseEntity.ok(new SuccessResponse("Message sent with success"));
 
+        } catch (MessageQueueFullException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+                    .body(new ErrorResponse(
+                        "SERVICE_UNAVAILABLE",
+                        HttpStatus.SERVICE_UNAVAILABLE.value(),
+                        e.getMessage()
+                    ));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(
+                    new ErrorResponse(
+                        "BAD_REQUEST",
+                        HttpStatus.BAD_REQUEST.value(),
+                        e.getMessage()
+                    )
+            );
+        } catch (RuntimeException e) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(
+                    new ErrorResponse(
+                        "UNAUTHORIZED",
+                        HttpStatus.UNAUTHORIZED.value(),
+                        e.getMessage()
+                    )
+            );
+        }
+    }
+
+    @Operation(
+        summary = "Get the authenticated user's inbox",
+        description = "Every conversation about the user's rentals, one per rental and sender, most recent activity first.",
+        security = @SecurityRequirement(name = "bearerAuth"),
+        responses = {
+            @ApiResponse(
+                responseCode = "200",
+                description = "One page of conversations; pass next_cursor as the after parameter to get the next one",
+                content = @Content(
+                    mediaType = "application/json",
+                    schema = @Schema(implementation = InboxPageResponse.class),
+                    examples = {
+                        @ExampleObject(
+                            name = "InboxPageResponse",
+                            value = """
+                            {
+                              "conversations": [
+                                {
+                                  "id": 5,
+                                  "rental_id": 4,
+                                  "sender_id": 3,
+                                  "last_message_id": 12,
+                                  "lastActivity": "2023-02-05T15:30:00",
+                                  "message_count": 7
+                                }
+                              ],
+                              "next_cursor": "MjAyMy0wMi0wNVQxNTozMDowMHw1"
+                            }
+                            """
+                        )
+                    }
+                )
+            ),
+            @ApiResponse(
+                responseCode = "400",
+                description = "Bad Request: invalid limit or cursor",
+                content = @Content(
+                    mediaType = "application/json",
+                    schema = @Schema(implementation = ErrorResponse.class),
+                    examples = {
+                        @ExampleObject(
+                            name = "InvalidCursorResponse",
+                            value = """
+                            {
+                              "error": "BAD_REQUEST",
+                              "status": 400,
+                              "message": "Invalid cursor"
+                            }
+                            """
+                        )
+                    }
+                )
+            ),
+            @ApiResponse(
+                responseCode = "401",
+                description = "Unauthorized: User not authenticated",
+                content = @Content(
+                    mediaType = "application/json",
+                    schema = @Schema(implementation = ErrorResponse.class),
+                    examples = {
+                        @ExampleObject(
+                            name = "UnauthorizedResponse",
+                            value = """
+                            {
+                              "error": "UNAUTHORIZED",
+                              "status": 401,
+                              "message": "Utilisateur non authentifié"
+                            }
+                            """
+                        )
+                    }
+                )
+            )
+        }
+    )
+    @GetMapping("/inbox")
+    public ResponseEntity<?> getInbox(
+            @RequestParam(required = false) Integer limit,
+            @RequestParam(required = false) String after,
+            Authentication authentication) {
+        try {
+            return ResponseEntity.ok(messageService.getOwnerInbox(authentication.getName(), limit, after));
         } catch (IllegalArgumentException e) {
             return ResponseEntity.badRequest().body(
                     new ErrorResponse(
@@ -143,5 +280,107 @@ public class MessageController {
             );
         }
     }
-}
 
+    @Operation(
+        summary = "Count the messages received by the authenticated user",
+        description = "Counts are maintained as messages arrive, so this never scans the messages.",
+        security = @SecurityRequirement(name = "bearerAuth"),
+        responses = {
+            @ApiResponse(
+                responseCode = "200",
+                description = "Total count and count per rental, keyed by rental id",
+                content = @Content(
+                    mediaType = "application/json",
+                    schema = @Schema(implementation = MessageCountsResponse.class),
+                    examples = {
+                        @ExampleObject(
+                            name = "MessageCountsResponse",
+                            value = """
+                            {
+                              "total": 12,
+                              "rentals": {
+                                "4": 7,
+                                "9": 5
+                              }
+                            }
+                            """
+                        )
+                    }
+                )
+            ),
+            @ApiResponse(
+                responseCode = "401",
+                description = "Unauthorized: User not authenticated",
+                content = @Content(
+                    mediaType = "application/json",
+                    schema = @Schema(implementation = ErrorResponse.class),
+                    examples = {
+                        @ExampleObject(
+                            name = "UnauthorizedResponse",
+                            value = """
+                            {
+                              "error": "UNAUTHORIZED",
+                              "status": 401,
+                              "message": "Utilisateur non authentifié"
+                            }
+                            """
+                        )
+                    }
+                )
+            )
+        }
+    )
+    @GetMapping("/counts")
+    public ResponseEntity<?> getMessageCounts(Authentication authentication) {
+        try {
+            return ResponseEntity.ok(messageService.getOwnerMessageCounts(authentication.getName()));
+        } catch (RuntimeException e) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(
+                    new ErrorResponse(
+                        "UNAUTHORIZED",
+                        HttpStatus.UNAUTHORIZED.value(),
+                        e.getMessage()
+                    )
+            );
+        }
+    }
+
+    @Operation(
+        summary = "Stream the messages sent about the authenticated user's rentals",
+        description = "Server-sent events: each new message arrives as a `message` event whose data is the message as JSON. "
+                + "Heartbeat comments keep the connection alive. A client that reads too slowly may be disconnected; "
+                + "it should reconnect and catch up with GET /api/rentals/{id}/messages.",
+        security = @SecurityRequirement(name = "bearerAuth"),
+        responses = {
+            @ApiResponse(
+                responseCode = "200",
+                description = "Event stream opened",
+                content = @Content(
+                    mediaType = MediaType.TEXT_EVENT_STREAM_VALUE,
+                    examples = {
+                        @ExampleObject(
+                            name = "MessageEvent",
+                            value = """
+                            event:message
+                            id:12
+                            data:{"id":12,"rental_id":4,"user_id":3,"message":"Is the flat still available in June?","createdAt":"2023-02-05T15:30:00"}
+                            """
+                        )
+                    }
+                )
+            ),
+            @ApiResponse(
+                responseCode = "401",
+                description = "Unauthorized: User not authenticated"
+            )
+        }
+    )
+    @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> streamMessages(Authentication authentication) {
+        try {
+            return ResponseEntity.ok(messageService.subscribeToOwnerMessages(authentication.getName()));
+        } catch (RuntimeException e) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+    }
+}
@@ -1,6 +1,15 @@
 package com.mick.chatopapi.controller;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.mick.chatopapi.dto.*;
+import com.mick.chatopapi.exception.ImageTooLargeException;
+import com.mick.chatopapi.exception.UnsupportedImageTypeException;
+import com.mick.chatopapi.image.HotImageCache;
+import com.mick.chatopapi.image.ImageVariant;
+import com.mick.chatopapi.image.storage.ImageStorage;
+import com.mick.chatopapi.image.storage.StoredImage;
+import com.mick.chatopapi.service.MessageService;
 import com.mick.chatopapi.service.RentalService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.media.Content;
@@ -11,16 +20,21 @@ import io.swagger.v3.oas.annotations.security.SecurityRequirement;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
 import org.springframework.context.support.DefaultMessageSourceResolvable;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.BindingResult;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.time.ZoneOffset;
 import java.util.NoSuchElementException;
 
 @Tag(name = "Rentals", description = "Rental management APIs")
@@ -28,15 +42,32 @@ import java.util.NoSuchElementException;
 @RequestMapping("/api/rentals")
 public class RentalController {
 
+    static final String TEXT_CSV_VALUE = "text/csv";
+    static final String IMAGE_WEBP_VALUE = "image/webp";
+    private static final Duration IMAGE_MAX_AGE = Duration.ofDays(365);
+    private static final MediaType TEXT_CSV = MediaType.parseMediaType(TEXT_CSV_VALUE);
+
     private final RentalService rentalService;
+    private final ObjectMapper objectMapper;
+    private final HotImageCache hotImageCache;
+    private final ImageStorage imageStorage;
+    private final MessageService messageService;
 
-    public RentalController(RentalService rentalService) {
+    public RentalController(RentalService rentalService, ObjectMapper objectMapper, HotImageCache hotImageCache,
+                            ImageStorage imageStorage, MessageService messageService) {
         this.rentalService = rentalService;
+        this.objectMapper = objectMapper;
+        this.hotImageCache = hotImageCache;
+        this.imageStorage = imageStorage;
+        this.messageService = messageService;
     }
 
 
     @Operation(
-        summary = "Get all rentals",
+        summary = "Get rentals",
+        description = "Returns rentals one page at a time, ordered by creation date. " +
+                "Pass the returned next_cursor as 'after' to fetch the following page. " +
+                "Set 'unpaged' to true to get every rental in a single response.",
         security = @SecurityRequirement(name = "bearerAuth"),
         responses = {
             @ApiResponse(
@@ -44,7 +75,7 @@ public class RentalController {
                 description = "List of rentals retrieved successfully",
                 content = @Content(
                     mediaType = "application/json",
-                    schema = @Schema(implementation = RentalsResponse.class),
+                    schema = @Schema(implementation = RentalsPageResponse.class),
                     examples = {
                         @ExampleObject(
                             name = "RentalsResponseExample",
@@ -68,7 +99,32 @@ public class RentalController {
                                   "surface": 154.0,
                                   ...
                                 }
-                              ]
+                              ],
+                              "next_cursor": "MjAxNC0xMi0wMlQwMDowMHwy"
+                            }
+                            """
+                        )
+                    }
+                )
+            ),
+            @ApiResponse(
+                responseCode = "304",
+                description = "Not Modified: no rental changed since the ETag sent in If-None-Match"
+            ),
+            @ApiResponse(
+                responseCode = "400",
+                description = "Bad Request: invalid limit or cursor",
+                content = @Content(
+                    mediaType = "application/json",
+                    schema = @Schema(implementation = ErrorResponse.class),
+                    examples = {
+                        @ExampleObject(
+                            name = "InvalidCursorExample",
+                            value = """
+                            {
+                              "error": "BAD_REQUEST",
+                              "status": 400,
+                              "message": "Invalid cursor"
                             }
                             """
                         )
@@ -98,8 +154,231 @@ public class RentalController {
         }
     )
     @GetMapping
-    public ResponseEntity<RentalsResponse> getAllRentals() {
-        return ResponseEntity.ok(new RentalsResponse(rentalService.getAllRentals()));
+    public ResponseEntity<?> getAllRentals(
+            @RequestParam(required = false) Integer limit,
+            @RequestParam(required = false) String after,
+            @RequestParam(defaultValue = "false") boolean unpaged,
+            WebRequest webRequest
+    ) {
+        if (webRequest.checkNotModified(rentalService.getRentalsVersion())) {
+            return null;
+        }
+        if (unpaged) {
+            return ResponseEntity.ok()
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .body(streamAllRentals());
+        }
+        try {
+            return ResponseEntity.ok(rentalService.getRentalsPage(limit, after));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest()
+                    .body(new ErrorResponse(
+                            "BAD_REQUEST",
+                            HttpStatus.BAD_REQUEST.value(),
+                            e.getMessage()
+                    ));
+        }
+    }
+
+    private StreamingResponseBody streamAllRentals() {
+        return outputStream -> {
+            try (JsonGenerator generator = objectMapper.createGenerator(outputStream)) {
+                generator.writeStartObject();
+                generator.writeArrayFieldStart("rentals");
+                rentalService.streamAllRentals(rental -> {
+                    try {
+                        generator.writeObject(rental);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+                generator.writeEndArray();
+                generator.writeEndObject();
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+        };
+    }
+
+    @Operation(
+        summary = "Filter and sort rentals",
+        description = "Filters rentals by price range, surface range and owner. " +
+                "Sort is one of NEWEST, OLDEST, PRICE_ASC, PRICE_DESC, SURFACE_ASC, SURFACE_DESC.",
+        security = @SecurityRequirement(name = "bearerAuth"),
+        responses = {
+            @ApiResponse(
+                responseCode = "200",
+                description = "Matching rentals retrieved successfully",
+                content = @Content(
+                    mediaType = "application/json",
+                    schema = @Schema(implementation = RentalsSearchResponse.class),
+                    examples = {
+                        @ExampleObject(
+                            name = "RentalsSearchResponseExample",
+                            value = """
+                            {
+                              "rentals": [
+                                {
+                                  "id": 1,
+                                  "name": "test house 1",
+                                  "surface": 432.0,
+                                  "price": 300.0,
+                                  "description": "Lorem ipsum dolor sit amet",
+                                  "picture": "https://blog.technavio.org/wp-content/uploads/2018/12/Online-House-Rental-Sites.jpg",
+                                  "owner_id": 1,
+                                  "createdAt": "2012-12-02T00:00:00",
+                                  "updatedAt": "2014-12-02T00:00:00"
+                                }
+                              ],
+                              "page": 0,
+                              "size": 20,
+                              "total_elements": 1,
+                              "total_pages": 1
+                            }
+                            """
+                        )
+                    }
+                )
+            ),
+            @ApiResponse(
+                responseCode = "400",
+                description = "Bad Request: invalid sort, page or limit",
+                content = @Content(
+                    mediaType = "application/json",
+                    schema = @Schema(implementation = ErrorResponse.class),
+                    examples = {
+                        @ExampleObject(
+                            name = "InvalidSortExample",
+                            value = """
+                            {
+                              "error": "BAD_REQUEST",
+                              "status": 400,
+                              "message": "Unknown sort: CHEAPEST"
+                            }
+                            """
+                        )
+                    }
+                )
+            ),
+            @ApiResponse(
+                responseCode = "401",
+                description = "Unauthorized: User not authenticated",
+                content = @Content(
+                    mediaType = "application/json",
+                    schema = @Schema(implementation = ErrorResponse.class),
+                    examples = {
+                        @ExampleObject(
+                            name = "UnauthorizedExample",
+                            value = """
+                            {
+                              "error": "UNAUTHORIZED",
+                              "status": 401,
+                              "message": "Unauthenticated user."
+                            }
+                            """
+                        )
+                    }
+                )
+            )
+        }
+    )
+    @GetMapping("/filter")
+    public ResponseEntity<?> filterRentals(
+            @RequestParam(name = "min_price", required = false) Double minPrice,
+            @RequestParam(name = "max_price", required = false) Double maxPrice,
+            @RequestParam(name = "min_surface", required = false) Double minSurface,
+            @RequestParam(name = "max_surface", required = false) Double maxSurface,
+            @RequestParam(name = "owner_id", required = false) Integer ownerId,
+            @RequestParam(defaultValue = "NEWEST") String sort,
+            @RequestParam(required = false) Integer page,
+            @RequestParam(required = false) Integer limit
+    ) {
+        try {
+            RentalSearchCriteria criteria = new RentalSearchCriteria(
+                    minPrice, maxPrice, minSurface, maxSurface, ownerId, RentalSort.fromValue(sort));
+            return ResponseEntity.ok(rentalService.searchRentals(criteria, page, limit));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest()
+                    .body(new ErrorResponse(
+                            "BAD_REQUEST",
+                            HttpStatus.BAD_REQUEST.value(),
+                            e.getMessage()
+                    ));
+        }
+    }
+
+    @Operation(
+        summary = "Full-text search over rental names and descriptions",
+        description = "Returns rentals matching every word of 'q', best matches first. " +
+                "Supports quoted phrases, prefix* and -exclusion.",
+        security = @SecurityRequirement(name = "bearerAuth"),
+        responses = {
+            @ApiResponse(
+                responseCode = "200",
+                description = "Matching rentals retrieved successfully",
+                content = @Content(
+                    mediaType = "application/json",
+                    schema = @Schema(implementation = RentalsSearchResponse.class)
+                )
+            ),
+            @ApiResponse(
+                responseCode = "400",
+                description = "Bad Request: missing search text, invalid page or limit",
+                content = @Content(
+                    mediaType = "application/json",
+                    schema = @Schema(implementation = ErrorResponse.class),
+                    examples = {
+                        @ExampleObject(
+                            name = "MissingTextExample",
+                            value = """
+                            {
+                              "error": "BAD_REQUEST",
+                              "status": 400,
+                              "message": "The search text is required"
+                            }
+                            """
+                        )
+                    }
+                )
+            ),
+            @ApiResponse(
+                responseCode = "401",
+                description = "Unauthorized: User not authenticated",
+                content = @Content(
+                    mediaType = "application/json",
+                    schema = @Schema(implementation = ErrorResponse.class),
+                    examples = {
+                        @ExampleObject(
+                            name = "UnauthorizedExample",
+                            value = """
+                            {
+                              "error": "UNAUTHORIZED",
+                              "status": 401,
+                              "message": "Unauthenticated user."
+                            }
+                            """
+                        )
+                    }
+                )
+            )
+        }
+    )
+    @GetMapping("/search")
+    public ResponseEntity<?> searchRentals(
+            @RequestParam(required = false) String q,
+            @RequestParam(required = false) Integer page,
+            @RequestParam(required = false) Integer limit
+    ) {
+        try {
+            return ResponseEntity.ok(rentalService.fullTextSearch(q, page, limit));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest()
+                    .body(new ErrorResponse(
+                            "BAD_REQUEST",
+                            HttpStatus.BAD_REQUEST.value(),
+                            e.getMessage()
+                    ));
+        }
     }
 
     @Operation(
@@ -132,6 +411,10 @@ public class RentalController {
                     }
                 )
             ),
+            @ApiResponse(
+                responseCode = "304",
+                description = "Not Modified: the rental has not changed since the ETag sent in If-None-Match"
+            ),
             @ApiResponse(
                 responseCode = "401",
                 description = "Unauthorized: User not authenticated",
@@ -175,7 +458,7 @@ public class RentalController {
         }
     )
     @GetMapping("/{id}")
-    public ResponseEntity<?> getRentalById(@PathVariable Integer id) {
+    public ResponseEntity<?> getRentalById(@PathVariable Integer id, WebRequest webRequest) {
         RentalDto rental = rentalService.getRentalById(id);
         if (rental == null) {
             return ResponseEntity.status(HttpStatus.NOT_FOUND)
@@ -185,10 +468,133 @@ public class RentalController {
                             "Rental not found"
                     ));
         }
+        // Taken from the rental being served, so the ETag matches the body even when it comes from the cache
+        String version = rental.id() + "-" + rental.updatedAt().toInstant(ZoneOffset.UTC).toEpochMilli();
+        if (webRequest.checkNotModified(version)) {
+            return null;
+        }
         return ResponseEntity.ok(rental);
     }
 
 
+    @Operation(
+        summary = "Get the messages of a rental, newest first",
+        security = @SecurityRequirement(name = "bearerAuth"),
+        responses = {
+            @ApiResponse(
+                responseCode = "200",
+                description = "One page of messages; pass next_cursor as the after parameter to get the older ones",
+                content = @Content(
+                    mediaType = "application/json",
+                    schema = @Schema(implementation = MessagesPageResponse.class),
+                    examples = {
+                        @ExampleObject(
+                            name = "MessagesPageExample",
+                            value = """
+                            {
+                              "messages": [
+                                {
+                                  "id": 12,
+                                  "user_id": 3,
+                                  "message": "Is the flat still available in June?",
+                                  "createdAt": "2023-02-05T15:30:00"
+                                }
+                              ],
+                              "next_cursor": "MjAyMy0wMi0wNVQxNTozMDoxMnwxMg"
+                            }
+                            """
+                        )
+                    }
+                )
+            ),
+            @ApiResponse(
+                responseCode = "400",
+                description = "Bad Request: invalid limit or cursor",
+                content = @Content(
+                    mediaType = "application/json",
+                    schema = @Schema(implementation = ErrorResponse.class),
+                    examples = {
+                        @ExampleObject(
+                            name = "InvalidCursorExample",
+                            value = """
+                            {
+                              "error": "BAD_REQUEST",
+                              "status": 400,
+                              "message": "Invalid cursor"
+                            }
+                            """
+                        )
+                    }
+                )
+            ),
+            @ApiResponse(
+                responseCode = "401",
+                description = "Unauthorized: User not authenticated",
+                content = @Content(
+                    mediaType = "application/json",
+                    schema = @Schema(implementation = ErrorResponse.class),
+                    examples = {
+                        @ExampleObject(
+                            name = "UnauthorizedExample",
+                            value = """
+                            {
+                              "error": "UNAUTHORIZED",
+                              "status": 401,
+                              "message": "Unauthenticated user."
+                            }
+                            """
+                        )
+                    }
+                )
+            ),
+            @ApiResponse(
+                responseCode = "404",
+                description = "Rental not found",
+                content = @Content(
+                    mediaType = "application/json",
+                    schema = @Schema(implementation = ErrorResponse.class),
+                    examples = {
+                        @ExampleObject(
+                            name = "NotFoundExample",
+                            value = """
+                            {
+                              "error": "NOT_FOUND",
+                              "status": 404,
+                              "message": "Rental not found"
+                            }
+                            """
+                        )
+                    }
+                )
+            )
+        }
+    )
+    @GetMapping("/{id}/messages")
+    public ResponseEntity<?> getRentalMessages(
+            @PathVariable Integer id,
+            @RequestParam(required = false) Integer limit,
+            @RequestParam(required = false) String after
+    ) {
+        try {
+            return ResponseEntity.ok(messageService.getRentalMessages(id, limit, after));
+        } catch (NoSuchElementException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                    .body(new ErrorResponse(
+                            "NOT_FOUND",
+                            HttpStatus.NOT_FOUND.value(),
+                            "Rental not found"
+                    ));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest()
+                    .body(new ErrorResponse(
+                            "BAD_REQUEST",
+                            HttpStatus.BAD_REQUEST.value(),
+                            e.getMessage()
+                    ));
+        }
+    }
+
+
     @Operation(
         summary = "Create a new rental",
         security = @SecurityRequirement(name = "bearerAuth"),
@@ -277,6 +683,106 @@ public class RentalController {
             return ResponseEntity
                     .status(HttpStatus.CREATED)
                     .body(new RentalMessageResponse("Rental created !"));
+        } catch (ImageTooLargeException e) {
+            return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE)
+                    .body(new ErrorResponse(
+                            "PAYLOAD_TOO_LARGE",
+                            HttpStatus.PAYLOAD_TOO_LARGE.value(),
+                            e.getMessage()
+                    ));
+        } catch (UnsupportedImageTypeException e) {
+            return ResponseEntity.status(HttpStatus.UNSUPPORTED_MEDIA_TYPE)
+                    .body(new ErrorResponse(
+                            "UNSUPPORTED_MEDIA_TYPE",
+                            HttpStatus.UNSUPPORTED_MEDIA_TYPE.value(),
+                            e.getMessage()
+                    ));
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
+                    .body(new ErrorResponse(
+                            "UNAUTHORIZED",
+                            HttpStatus.UNAUTHORIZED.value(),
+                            "Erreur: " + e.getMessage()
+                    ));
+        }
+    }
+
+    @Operation(
+        summary = "Import rentals in bulk",
+        description = "Accepts a JSON array or a CSV file with a header line " +
+                "(name,surface,price,description,picture). Rows are inserted in batches; " +
+                "invalid rows are reported and skipped without aborting the import.",
+        security = @SecurityRequirement(name = "bearerAuth"),
+        responses = {
+            @ApiResponse(
+                responseCode = "200",
+                description = "Import completed, possibly with rejected rows",
+                content = @Content(
+                    mediaType = "application/json",
+                    schema = @Schema(implementation = RentalImportResponse.class),
+                    examples = {
+                        @ExampleObject(
+                            name = "ImportResponseExample",
+                            value = """
+                            {
+                              "imported": 998,
+                              "failed": 2,
+                              "errors": [
+                                { "row": 17, "reason": "The price field is required." },
+                                { "row": 512, "reason": "Invalid value: Cannot deserialize value of type `java.lang.Double` from String \"cheap\"" }
+                              ]
+                            }
+                            """
+                        )
+                    }
+                )
+            ),
+            @ApiResponse(
+                responseCode = "400",
+                description = "Bad Request: the body could not be read",
+                content = @Content(
+                    mediaType = "application/json",
+                    schema = @Schema(implementation = ErrorResponse.class)
+                )
+            ),
+            @ApiResponse(
+                responseCode = "401",
+                description = "Unauthorized: user not authenticated",
+                content = @Content(
+                    mediaType = "application/json",
+                    schema = @Schema(implementation = ErrorResponse.class),
+                    examples = {
+                        @ExampleObject(
+                            name = "UnauthorizedExample",
+                            value = """
+                            {
+                              "error": "UNAUTHORIZED",
+                              "status": 401,
+                              "message": "Unauthenticated user"
+                            }
+                            """
+                        )
+                    }
+                )
+            )
+        }
+    )
+    @PostMapping(
+            value = "/import",
+            consumes = {MediaType.APPLICATION_JSON_VALUE, RentalController.TEXT_CSV_VALUE},
+            produces = MediaType.APPLICATION_JSON_VALUE
+    )
+    public ResponseEntity<?> importRentals(InputStream body, @RequestHeader(HttpHeaders.CONTENT_TYPE) MediaType contentType) {
+        try {
+            boolean csv = TEXT_CSV.isCompatibleWith(contentType);
+            return ResponseEntity.ok(rentalService.importRentals(body, csv));
+        } catch (IOException e) {
+            return ResponseEntity.badRequest()
+                    .body(new ErrorResponse(
+                            "BAD_REQUEST",
+                            HttpStatus.BAD_REQUEST.value(),
+                            "Unable to read the import: " + e.getMessage()
+                    ));
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
                     .body(new ErrorResponse(
@@ -289,12 +795,33 @@ public class RentalController {
 
     @Operation(
         summary = "Get a rental image by filename",
+        description = "Pass 'size' (thumbnail or medium) to get a resized variant. " +
+                "Variants are generated in the background, so the original is returned until they are ready.",
         responses = {
             @ApiResponse(
                 responseCode = "200",
                 description = "Image retrieved successfully",
                 content = @Content(
-                        mediaType = "image/jpeg"
+                        mediaType = "image/*"
+                )
+            ),
+            @ApiResponse(
+                responseCode = "206",
+                description = "Partial Content: the byte range requested in the Range header",
+                content = @Content(
+                        mediaType = "image/*"
+                )
+            ),
+            @ApiResponse(
+                responseCode = "304",
+                description = "Not Modified: the cached copy matching If-None-Match or If-Modified-Since is still valid"
+            ),
+            @ApiResponse(
+                responseCode = "400",
+                description = "Bad Request: unknown image size",
+                content = @Content(
+                    mediaType = "application/json",
+                    schema = @Schema(implementation = ErrorResponse.class)
                 )
             ),
             @ApiResponse(
@@ -339,22 +866,64 @@ public class RentalController {
             )
         }
     )
-    @GetMapping(value = "/image/{filename}", produces = MediaType.IMAGE_JPEG_VALUE)
-    public @ResponseBody ResponseEntity<?> getRentalImage(@PathVariable String filename) {
+    @GetMapping("/image/{filename}")
+    public ResponseEntity<?> getRentalImage(@PathVariable String filename,
+                                            @RequestParam(required = false) String size,
+                                            WebRequest webRequest) {
         try {
-            Path filePath = Paths.get("uploads").resolve(filename).normalize();
-            if (!Files.exists(filePath) || !Files.isReadable(filePath)) {
-                return ResponseEntity.status(HttpStatus.NOT_FOUND)
-                        .body(new ErrorResponse(
-                                "NOT_FOUND",
-                                HttpStatus.NOT_FOUND.value(),
-                                "Image not found"
-                        ));
+            String servedName = filename;
+            StoredImage stored = null;
+            boolean fallback = false;
+            if (size != null) {
+                // Variants are generated in the background; until one exists the original is served
+                String variantName = ImageVariant.fromValue(size).filenameFor(filename);
+                stored = findImage(variantName);
+                if (stored != null) {
+                    servedName = variantName;
+                } else {
+                    fallback = true;
+                }
+            }
+            if (stored == null) {
+                stored = findImage(filename);
+            }
+            if (stored == null) {
+                return imageNotFound();
+            }
+            long lastModified = stored.lastModified();
+
+            // Stored filenames never get new content, so the name is a strong validator. A variant URL
+            // answered with the original must not be cached for good: the variant will replace it.
+            String eTag = "\"" + servedName + "\"";
+            CacheControl cacheControl = fallback
+                    ? CacheControl.noCache()
+                    : CacheControl.maxAge(IMAGE_MAX_AGE).cachePublic().immutable();
+            if (webRequest.checkNotModified(eTag, lastModified)) {
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                        .cacheControl(cacheControl)
+                        .eTag(eTag)
+                        .lastModified(lastModified)
+                        .build();
+            }
+
+            HotImageCache.CachedImage image = hotImageCache.get(servedName, stored);
+            if (image == null) {
+                return imageNotFound();
             }
-            byte[] imageBytes = Files.readAllBytes(filePath);
+            // Returning the image as a Resource lets Spring stream it and answer Range requests with 206
             return ResponseEntity.ok()
-                    .contentType(MediaType.IMAGE_JPEG)
-                    .body(imageBytes);
+                    .cacheControl(cacheControl)
+                    .eTag(eTag)
+                    .lastModified(image.lastModified())
+                    .contentType(image.contentType())
+                    .body(image.resource());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                    .body(new ErrorResponse(
+                            "BAD_REQUEST",
+                            HttpStatus.BAD_REQUEST.value(),
+                            e.getMessage()
+                    ));
         } catch (IOException e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
                     .body(new ErrorResponse(
@@ -365,6 +934,32 @@ public class RentalController {
         }
     }
 
+    /**
+     * Looks a stored image up, or returns {@code null} when there is none. Only metadata is
+     * fetched, so conditional requests are answered without reading the image.
+     */
+    private StoredImage findImage(String name) throws IOException {
+        try {
+            ImageStorage.checkFilename(name);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+        HotImageCache.CachedImage cached = hotImageCache.peek(name);
+        if (cached != null) {
+            return new StoredImage(cached.resource(), cached.resource().contentLength(), cached.lastModified());
+        }
+        return imageStorage.find(name);
+    }
+
+    private ResponseEntity<ErrorResponse> imageNotFound() {
+        return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                .body(new ErrorResponse(
+                        "NOT_FOUND",
+                        HttpStatus.NOT_FOUND.value(),
+                        "Image not found"
+                ));
+    }
+
     @Operation(
         summary = "Update a rental by ID",
         security = @SecurityRequirement(name = "bearerAuth"),
@@ -444,6 +1039,20 @@ public class RentalController {
                             HttpStatus.NOT_FOUND.value(),
                             "Rental not found"
                     ));
+        } catch (ImageTooLargeException e) {
+            return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE)
+                    .body(new ErrorResponse(
+                            "PAYLOAD_TOO_LARGE",
+                            HttpStatus.PAYLOAD_TOO_LARGE.value(),
+                            e.getMessage()
+                    ));
+        } catch (UnsupportedImageTypeException e) {
+            return ResponseEntity.status(HttpStatus.UNSUPPORTED_MEDIA_TYPE)
+                    .body(new ErrorResponse(
+                            "UNSUPPORTED_MEDIA_TYPE",
+                            HttpStatus.UNSUPPORTED_MEDIA_TYPE.value(),
+                            e.getMessage()
+                    ));
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
                     .body(new ErrorResponse(
@@ -454,4 +1063,86 @@ public class RentalController {
         }
     }
 
+    @Operation(
+        summary = "Replace the picture of a rental",
+        description = "Streams the request body, a raw JPEG, PNG, GIF or WEBP image, straight to storage. " +
+                "The size and type are checked while the bytes arrive, so invalid uploads are rejected early.",
+        security = @SecurityRequirement(name = "bearerAuth"),
+        responses = {
+            @ApiResponse(
+                responseCode = "200",
+                description = "Picture updated successfully",
+                content = @Content(
+                    mediaType = "application/json",
+                    schema = @Schema(implementation = RentalMessageResponse.class)
+                )
+            ),
+            @ApiResponse(
+                responseCode = "404",
+                description = "Rental not found",
+                content = @Content(
+                    mediaType = "application/json",
+                    schema = @Schema(implementation = ErrorResponse.class)
+                )
+            ),
+            @ApiResponse(
+                responseCode = "413",
+                description = "The picture exceeds the maximum upload size",
+                content = @Content(
+                    mediaType = "application/json",
+                    schema = @Schema(implementation = ErrorResponse.class)
+                )
+            ),
+            @ApiResponse(
+                responseCode = "415",
+                description = "The body is not a supported image",
+                content = @Content(
+                    mediaType = "application/json",
+                    schema = @Schema(implementation = ErrorResponse.class)
+                )
+            )
+        }
+    )
+    @PutMapping(value = "/{id}/picture", consumes = {
+            MediaType.IMAGE_JPEG_VALUE, MediaType.IMAGE_PNG_VALUE, MediaType.IMAGE_GIF_VALUE, IMAGE_WEBP_VALUE
+    })
+    public ResponseEntity<?> updateRentalPicture(
+            @PathVariable Integer id,
+            InputStream body,
+            @RequestHeader(value = HttpHeaders.CONTENT_LENGTH, required = false) Long contentLength
+    ) {
+        try {
+            rentalService.updateRentalPicture(id, body, contentLength == null ? -1 : contentLength);
+            return ResponseEntity.ok(new RentalMessageResponse("Rental picture updated !"));
+        } catch (NoSuchElementException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                    .body(new ErrorResponse(
+                            "NOT_FOUND",
+                            HttpStatus.NOT_FOUND.value(),
+                            "Rental not found"
+                    ));
+        } catch (ImageTooLargeException e) {
+            return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE)
+                    .body(new ErrorResponse(
+                            "PAYLOAD_TOO_LARGE",
+                            HttpStatus.PAYLOAD_TOO_LARGE.value(),
+                            e.getMessage()
+                    ));
+        } catch (UnsupportedImageTypeException e) {
+            return ResponseEntity.status(HttpStatus.UNSUPPORTED_MEDIA_TYPE)
+                    .body(new ErrorResponse(
+                            "UNSUPPORTED_MEDIA_TYPE",
+                            HttpStatus.UNSUPPORTED_MEDIA_TYPE.value(),
+                            e.getMessage()
+                    ));
+        } catch (IOException e) {
+            return ResponseEntity.badRequest()
+                    .body(new ErrorResponse(
+                            "BAD_REQUEST",
+                            HttpStatus.BAD_REQUEST.value(),
+                            "Unable to read the picture: " + e.getMessage()
+                    ));
+        }
+    }
+
 }
@@ -0,0 +1,19 @@
+package com.mick.chatopapi.dto;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.time.LocalDateTime;
+
+public record ConversationDto(
+        Integer id,
+        @JsonProperty("rental_id")
+        Integer rentalId,
+        @JsonProperty("sender_id")
+        Integer senderId,
+        @JsonProperty("last_message_id")
+        Integer lastMessageId,
+        LocalDateTime lastActivity,
+        @JsonProperty("message_count")
+        Long messageCount
+) {
+}
@@ -0,0 +1,7 @@
+package com.mick.chatopapi.dto;
+
+public record ImageRefCount(
+        String filename,
+        Integer refCount
+) {
+}
@@ -0,0 +1,12 @@
+package com.mick.chatopapi.dto;
+
+import java.util.Map;
+
+/**
+ * Number of messages received by an owner, in total and for each of their rentals (keyed by rental id).
+ */
+public record MessageCountsResponse(
+        long total,
+        Map<Integer, Long> rentals
+) {
+}
@@ -0,0 +1,14 @@
+package com.mick.chatopapi.dto;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.time.LocalDateTime;
+
+public record MessageDto(
+        Integer id,
+        @JsonProperty("user_id")
+        Integer userId,
+        String message,
+        LocalDateTime createdAt
+) {
+}
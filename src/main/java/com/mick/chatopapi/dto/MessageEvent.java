@@ -0,0 +1,20 @@
+package com.mick.chatopapi.dto;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.time.LocalDateTime;
+
+/**
+ * A message pushed to the owner of the rental it was sent about.
+ * The id is null while the message is still waiting in the write-behind queue.
+ */
+public record MessageEvent(
+        Integer id,
+        @JsonProperty("rental_id")
+        Integer rentalId,
+        @JsonProperty("user_id")
+        Integer userId,
+        String message,
+        LocalDateTime createdAt
+) {
+}
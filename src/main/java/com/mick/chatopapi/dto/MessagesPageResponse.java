@@ -0,0 +1,12 @@
+package com.mick.chatopapi.dto;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.List;
+
+public record MessagesPageResponse(
+        List<MessageDto> messages,
+        @JsonProperty("next_cursor")
+        String nextCursor
+) {
+}
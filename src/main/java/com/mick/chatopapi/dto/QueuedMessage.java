@@ -0,0 +1,11 @@
+package com.mick.chatopapi.dto;
+
+import java.time.LocalDateTime;
+
+public record QueuedMessage(
+        Integer rentalId,
+        Integer userId,
+        String message,
+        LocalDateTime createdAt
+) {
+}
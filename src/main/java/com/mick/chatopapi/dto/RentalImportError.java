@@ -0,0 +1,4 @@
+package com.mick.chatopapi.dto;
+
+public record RentalImportError(long row, String reason) {
+}
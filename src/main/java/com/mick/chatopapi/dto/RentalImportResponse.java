@@ -0,0 +1,10 @@
+package com.mick.chatopapi.dto;
+
+import java.util.List;
+
+public record RentalImportResponse(
+        long imported,
+        long failed,
+        List<RentalImportError> errors
+) {
+}
@@ -0,0 +1,11 @@
+package com.mick.chatopapi.dto;
+
+public record RentalSearchCriteria(
+        Double minPrice,
+        Double maxPrice,
+        Double minSurface,
+        Double maxSurface,
+        Integer ownerId,
+        RentalSort sort
+) {
+}
@@ -0,0 +1,19 @@
+package com.mick.chatopapi.dto;
+
+public enum RentalSort {
+    NEWEST,
+    OLDEST,
+    PRICE_ASC,
+    PRICE_DESC,
+    SURFACE_ASC,
+    SURFACE_DESC;
+
+    public static RentalSort fromValue(String value) {
+        for (RentalSort sort : values()) {
+            if (sort.name().equalsIgnoreCase(value)) {
+                return sort;
+            }
+        }
+        throw new IllegalArgumentException("Unknown sort: " + value);
+    }
+}
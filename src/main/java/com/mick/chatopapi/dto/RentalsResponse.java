@@ -1,5 +0,0 @@
-package com.mick.chatopapi.dto;
-
-import java.util.List;
-
-public record RentalsResponse(List<RentalDto> rentals) {}
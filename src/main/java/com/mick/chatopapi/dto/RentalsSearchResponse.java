@@ -0,0 +1,16 @@
+package com.mick.chatopapi.dto;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.List;
+
+public record RentalsSearchResponse(
+        List<RentalDto> rentals,
+        int page,
+        int size,
+        @JsonProperty("total_elements")
+        long totalElements,
+        @JsonProperty("total_pages")
+        int totalPages
+) {
+}
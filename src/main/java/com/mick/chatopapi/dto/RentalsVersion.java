@@ -0,0 +1,9 @@
+package com.mick.chatopapi.dto;
+
+import java.time.LocalDateTime;
+
+public record RentalsVersion(
+        LocalDateTime lastUpdatedAt,
+        Long count
+) {
+}
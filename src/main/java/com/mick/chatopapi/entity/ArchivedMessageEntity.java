@@ -0,0 +1,41 @@
+package com.mick.chatopapi.entity;
+
+import jakarta.persistence.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * A message moved out of the messages table once it got older than the archive age.
+ * It keeps the id it had there; the user and rental are plain columns so archiving never joins.
+ */
+@Entity
+@Table(name = "messages_archive", indexes = {
+        @Index(name = "idx_messages_archive_rental_created_at_id", columnList = "rental_id, created_at, id, user_id")
+})
+public class ArchivedMessageEntity {
+
+    @Id
+    private Integer id;
+
+    @Column(nullable = false, length = 2000)
+    private String message;
+
+    @Column(nullable = false)
+    private Integer user_id;
+
+    @Column(nullable = false)
+    private Integer rental_id;
+
+    @Column(nullable = false)
+    private LocalDateTime created_at;
+
+    @Column(nullable = false)
+    private LocalDateTime updated_at;
+
+    public ArchivedMessageEntity() {
+    }
+
+    public Integer getId() {
+        return id;
+    }
+}
@@ -0,0 +1,45 @@
+package com.mick.chatopapi.entity;
+
+import jakarta.persistence.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * One row per (rental, sender), updated with every message so an owner's inbox
+ * is read from here instead of grouping the messages.
+ */
+@Entity
+@Table(name = "conversations",
+        uniqueConstraints = @UniqueConstraint(name = "uk_conversations_rental_sender", columnNames = {"rental_id", "sender_id"}),
+        indexes = @Index(name = "idx_conversations_owner_last_activity", columnList = "owner_id, last_activity, id"))
+public class ConversationEntity {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Integer id;
+
+    @Column(nullable = false)
+    private Integer rental_id;
+
+    @Column(nullable = false)
+    private Integer sender_id;
+
+    @Column(nullable = false)
+    private Integer owner_id;
+
+    // Null while the last message is still waiting in the write-behind queue
+    private Integer last_message_id;
+
+    @Column(nullable = false)
+    private LocalDateTime last_activity;
+
+    @Column(nullable = false)
+    private Long message_count;
+
+    public ConversationEntity() {
+    }
+
+    public Integer getId() {
+        return id;
+    }
+}
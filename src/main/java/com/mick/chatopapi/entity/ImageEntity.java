@@ -0,0 +1,57 @@
+package com.mick.chatopapi.entity;
+
+import jakarta.persistence.*;
+
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name="images")
+public class ImageEntity {
+
+    @Id
+    @Column(length = 100)
+    private String filename;
+
+    @Column(nullable = false, length = 64)
+    private String sha256;
+
+    @Column(nullable = false)
+    private Long size;
+
+    @Column(nullable = false)
+    private Integer ref_count;
+
+    @Column(nullable = false)
+    private LocalDateTime created_at;
+
+    public ImageEntity() {
+    }
+
+    public ImageEntity(String filename, String sha256, Long size) {
+        this.filename = filename;
+        this.sha256 = sha256;
+        this.size = size;
+        this.ref_count = 1;
+        this.created_at = LocalDateTime.now();
+    }
+
+    public String getFilename() {
+        return filename;
+    }
+
+    public String getSha256() {
+        return sha256;
+    }
+
+    public Long getSize() {
+        return size;
+    }
+
+    public Integer getRef_count() {
+        return ref_count;
+    }
+
+    public LocalDateTime getCreated_at() {
+        return created_at;
+    }
+}
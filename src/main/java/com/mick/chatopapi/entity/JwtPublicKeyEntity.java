@@ -0,0 +1,54 @@
+package com.mick.chatopapi.entity;
+
+import jakarta.persistence.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * Public half of a rotated JWT signing key, shared so every node can verify the tokens
+ * signed by the others. The private half never leaves the node that generated it.
+ */
+@Entity
+@Table(name = "jwt_public_keys", indexes = @Index(name = "idx_jwt_public_keys_expires_at", columnList = "expires_at"))
+public class JwtPublicKeyEntity {
+
+    @Id
+    @Column(length = 64)
+    private String kid;
+
+    @Column(nullable = false, length = 10)
+    private String algorithm;
+
+    // Public JWK as JSON
+    @Column(nullable = false, length = 1024)
+    private String jwk;
+
+    @Column(nullable = false)
+    private LocalDateTime created_at;
+
+    @Column(nullable = false)
+    private LocalDateTime expires_at;
+
+    public JwtPublicKeyEntity() {
+    }
+
+    public JwtPublicKeyEntity(String kid, String algorithm, String jwk, LocalDateTime createdAt, LocalDateTime expiresAt) {
+        this.kid = kid;
+        this.algorithm = algorithm;
+        this.jwk = jwk;
+        this.created_at = createdAt;
+        this.expires_at = expiresAt;
+    }
+
+    public String getKid() {
+        return kid;
+    }
+
+    public String getJwk() {
+        return jwk;
+    }
+
+    public void setExpires_at(LocalDateTime expires_at) {
+        this.expires_at = expires_at;
+    }
+}
@@ -0,0 +1,50 @@
+package com.mick.chatopapi.entity;
+
+import jakarta.persistence.*;
+
+import java.io.Serializable;
+import java.util.Objects;
+
+/**
+ * Number of messages sent about a rental, or about all the rentals of an owner.
+ * Maintained incrementally so the counts never need a count(*) over messages.
+ */
+@Entity
+@Table(name = "message_counters")
+@IdClass(MessageCounterEntity.Key.class)
+public class MessageCounterEntity {
+
+    @Id
+    @Column(length = 10)
+    private String counter_type;
+
+    @Id
+    private Integer target_id;
+
+    @Column(nullable = false)
+    private Long message_count;
+
+    public MessageCounterEntity() {
+    }
+
+    public static class Key implements Serializable {
+
+        private String counter_type;
+        private Integer target_id;
+
+        public Key() {
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Key key
+                    && Objects.equals(counter_type, key.counter_type)
+                    && Objects.equals(target_id, key.target_id);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(counter_type, target_id);
+        }
+    }
+}
@@ -5,7 +5,12 @@ import jakarta.persistence.*;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name="messages")
+@Table(name="messages", indexes = {
+        // Covers the history scan and its ordering; only the page rows go back to the table for the message text
+        @Index(name = "idx_messages_rental_created_at_id", columnList = "rental_id, created_at, id, user_id"),
+        // Lets the archiver pick the oldest messages without scanning the table
+        @Index(name = "idx_messages_created_at_id", columnList = "created_at, id")
+})
 public class MessageEntity {
 
     @Id
@@ -15,11 +20,11 @@ public class MessageEntity {
     @Column(nullable = false, length = 2000)
     private String message;
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "user_id", referencedColumnName = "id", nullable = false)
     private UserEntity user;
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "rental_id", referencedColumnName = "id", nullable = false)
     private RentalEntity rental;
 
@@ -38,6 +43,10 @@ public class MessageEntity {
         this.rental = rental;
     }
 
+    public Integer getId() {
+        return id;
+    }
+
     public void setCreated_at(LocalDateTime created_at) {
         this.created_at = created_at;
     }
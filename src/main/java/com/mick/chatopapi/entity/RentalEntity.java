@@ -1,11 +1,19 @@
 package com.mick.chatopapi.entity;
 
+import com.mick.chatopapi.image.ContentAddressedImageStore;
 import jakarta.persistence.*;
 
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name="rentals")
+@Table(name="rentals", indexes = {
+        @Index(name = "idx_rentals_created_at_id", columnList = "created_at, id"),
+        @Index(name = "idx_rentals_price", columnList = "price"),
+        @Index(name = "idx_rentals_surface", columnList = "surface"),
+        @Index(name = "idx_rentals_owner_created_at", columnList = "owner_id, created_at"),
+        @Index(name = "idx_rentals_updated_at", columnList = "updated_at"),
+        @Index(name = "idx_rentals_picture_filename", columnList = "picture_filename")
+})
 public class RentalEntity {
 
     @Id
@@ -27,7 +35,10 @@ public class RentalEntity {
     @Column(nullable = false)
     private String picture; // URL de l'image
 
-    @ManyToOne
+    // Stored image the picture URL points to, kept in sync by setPicture so images can be matched exactly
+    private String picture_filename;
+
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "owner_id", referencedColumnName = "id",nullable = false)
     private UserEntity owner;
 
@@ -55,7 +66,7 @@ public class RentalEntity {
         this.surface = surface;
         this.price = price;
         this.description = description;
-        this.picture = picture;
+        setPicture(picture);
         this.owner = owner;
         this.created_at = created_at;
         this.updated_at = updated_at;
@@ -114,6 +125,11 @@ public class RentalEntity {
 
     public void setPicture(String picture) {
         this.picture = picture;
+        this.picture_filename = picture == null ? null : ContentAddressedImageStore.filenameOf(picture);
+    }
+
+    public String getPicture_filename() {
+        return picture_filename;
     }
 
     public UserEntity getOwner() {
@@ -0,0 +1,8 @@
+package com.mick.chatopapi.exception;
+
+public class ImageTooLargeException extends RuntimeException {
+
+    public ImageTooLargeException(long maxBytes) {
+        super("The image must not exceed " + maxBytes + " bytes");
+    }
+}
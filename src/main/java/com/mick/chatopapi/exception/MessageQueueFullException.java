@@ -0,0 +1,15 @@
+package com.mick.chatopapi.exception;
+
+public class MessageQueueFullException extends RuntimeException {
+
+    private final long retryAfterSeconds;
+
+    public MessageQueueFullException(long retryAfterSeconds) {
+        super("Too many messages are waiting to be saved, please retry later");
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
@@ -0,0 +1,8 @@
+package com.mick.chatopapi.exception;
+
+public class UnsupportedImageTypeException extends RuntimeException {
+
+    public UnsupportedImageTypeException() {
+        super("The picture must be a JPEG, PNG, GIF or WEBP image");
+    }
+}
@@ -0,0 +1,281 @@
+package com.mick.chatopapi.image;
+
+import com.mick.chatopapi.configuration.ImageUploadProperties;
+import com.mick.chatopapi.exception.ImageTooLargeException;
+import com.mick.chatopapi.exception.UnsupportedImageTypeException;
+import com.mick.chatopapi.image.storage.ImageStorage;
+import com.mick.chatopapi.image.storage.LocalImageStorage;
+import com.mick.chatopapi.repository.ImageRepository;
+import com.mick.chatopapi.repository.RentalRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.util.UriUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Stores each distinct image once, named after the SHA-256 of its content, and counts
+ * how many rentals reference it. A file is only deleted when its last reference goes.
+ */
+@Component
+public class ContentAddressedImageStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(ContentAddressedImageStore.class);
+
+    static final String IMAGE_PATH = "/api/rentals/image/";
+
+    private static final Map<MediaType, String> EXTENSIONS = Map.of(
+            MediaType.IMAGE_JPEG, ".jpg",
+            MediaType.IMAGE_PNG, ".png",
+            MediaType.IMAGE_GIF, ".gif",
+            MediaType.parseMediaType("image/webp"), ".webp");
+
+    private final ImageRepository imageRepository;
+    private final RentalRepository rentalRepository;
+    private final ImageStorage imageStorage;
+    private final ImageVariantGenerator imageVariantGenerator;
+    private final HotImageCache hotImageCache;
+    private final ImageUploadProperties uploadProperties;
+    private final List<MediaType> allowedTypes;
+    private final TransactionTemplate transactionTemplate;
+    // Serializes store/release of the same content on this node; across nodes, the lock on the image row does
+    private final ReentrantLock[] locks = new ReentrantLock[64];
+
+    @Value("${spring.servlet.multipart.location}")
+    private String uploadDir;
+
+    public ContentAddressedImageStore(ImageRepository imageRepository, RentalRepository rentalRepository,
+                                      ImageStorage imageStorage, ImageVariantGenerator imageVariantGenerator,
+                                      HotImageCache hotImageCache, ImageUploadProperties uploadProperties,
+                                      PlatformTransactionManager transactionManager) {
+        this.imageRepository = imageRepository;
+        this.rentalRepository = rentalRepository;
+        this.imageStorage = imageStorage;
+        this.imageVariantGenerator = imageVariantGenerator;
+        this.hotImageCache = hotImageCache;
+        this.uploadProperties = uploadProperties;
+        this.allowedTypes = MediaType.parseMediaTypes(uploadProperties.getAllowedTypes());
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        for (int i = 0; i < locks.length; i++) {
+            locks[i] = new ReentrantLock();
+        }
+    }
+
+    /**
+     * Stores the upload, hashing it while it is copied, and returns its content-addressed filename.
+     */
+    public String store(MultipartFile file) throws IOException {
+        checkDeclaredSize(file.getSize());
+        try (InputStream inputStream = file.getInputStream()) {
+            return store(inputStream, file.getSize());
+        }
+    }
+
+    /**
+     * Streams an image into the upload directory in a single pass, then hands it to the storage: the type is checked
+     * from the first bytes, the size as bytes arrive and the hash is computed along the way.
+     * A negative {@code declaredSize} means the length is not known up front.
+     */
+    public String store(InputStream content, long declaredSize) throws IOException {
+        checkDeclaredSize(declaredSize);
+        Path uploadPath = Paths.get(uploadDir);
+        Files.createDirectories(uploadPath);
+
+        InputStream limited = new SizeLimitedInputStream(content, uploadProperties.getMaxSize().toBytes());
+        byte[] header = limited.readNBytes(ImageContentTypes.HEADER_LENGTH);
+        MediaType contentType = ImageContentTypes.detect(header);
+        if (contentType == null || !allowedTypes.contains(contentType)) {
+            throw new UnsupportedImageTypeException();
+        }
+
+        Path tempFile = Files.createTempFile(uploadPath, "upload-", ".tmp");
+        try {
+            MessageDigest digest = sha256();
+            digest.update(header);
+            try (OutputStream outputStream = Files.newOutputStream(tempFile);
+                 InputStream inputStream = new DigestInputStream(limited, digest)) {
+                outputStream.write(header);
+                inputStream.transferTo(outputStream);
+            }
+            String hash = HexFormat.of().formatHex(digest.digest());
+            String filename = hash + EXTENSIONS.getOrDefault(contentType, "");
+
+            boolean newImage;
+            ReentrantLock lock = lockFor(filename);
+            lock.lock();
+            try {
+                newImage = imageRepository.incrementRefCount(filename) == 0;
+                if (newImage) {
+                    long size = Files.size(tempFile);
+                    imageStorage.store(filename, tempFile);
+                    // The lock only covers this node; the upsert counts this reference if another node got here first
+                    imageRepository.insertOrIncrementRefCount(filename, hash, size, LocalDateTime.now());
+                }
+            } finally {
+                lock.unlock();
+            }
+            if (newImage) {
+                imageVariantGenerator.generateAsync(filename);
+            }
+            return filename;
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+    }
+
+    /**
+     * Drops one reference to the image and deletes the file once nothing references it.
+     * Images stored before deduplication have no reference count and are deleted directly.
+     * The row stays locked while the file goes, and is only removed once it has: a node storing
+     * the same content meanwhile waits, then finds no row and writes the file again.
+     */
+    public void release(String filename) {
+        ReentrantLock lock = lockFor(filename);
+        lock.lock();
+        try {
+            boolean deleted = Boolean.TRUE.equals(transactionTemplate.execute(status -> {
+                Optional<Integer> refCount = imageRepository.findRefCountForUpdate(filename);
+                if (refCount.isPresent()) {
+                    imageRepository.decrementRefCount(filename);
+                    if (refCount.get() > 1) {
+                        return false;
+                    }
+                }
+                try {
+                    imageStorage.delete(filename);
+                } catch (IOException e) {
+                    // The row is kept at zero references, for the orphan collector to retry
+                    logger.warn("Unable to delete image {}: {}", filename, e.getMessage());
+                    return false;
+                }
+                imageRepository.deleteIfUnreferenced(filename);
+                return true;
+            }));
+            if (deleted) {
+                deleteVariants(filename);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Deletes an image that no rental references any more, whatever its reference count says,
+     * as long as that count is still the one seen before the references were listed: a changed
+     * count means the image was stored again since, and a rental may be about to point to it.
+     * Returns false, and keeps the image, when it turns out to be referenced.
+     */
+    public boolean purgeIfUnreferenced(String filename, int expectedRefCount) throws IOException {
+        ReentrantLock lock = lockFor(filename);
+        lock.lock();
+        try {
+            boolean deleted = Boolean.TRUE.equals(transactionTemplate.execute(status -> {
+                if (imageRepository.findRefCountForUpdate(filename).orElse(0) != expectedRefCount
+                        || rentalRepository.existsByPictureFilename(filename)) {
+                    return false;
+                }
+                try {
+                    imageStorage.delete(filename);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                imageRepository.deleteById(filename);
+                return true;
+            }));
+            if (deleted) {
+                deleteVariants(filename);
+            }
+            return deleted;
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void deleteVariants(String filename) {
+        imageVariantGenerator.deleteVariants(filename);
+        hotImageCache.invalidate(filename);
+        for (ImageVariant variant : ImageVariant.values()) {
+            hotImageCache.invalidate(variant.filenameFor(filename));
+        }
+    }
+
+    /**
+     * Moves an image written before sharding into its sharded directory. Returns false when
+     * there was nothing to move.
+     */
+    public boolean migrateToShardedLayout(String filename) throws IOException {
+        if (!(imageStorage instanceof LocalImageStorage localImageStorage)) {
+            return false;
+        }
+        ReentrantLock lock = lockFor(filename);
+        lock.lock();
+        try {
+            return localImageStorage.migrateToShardedLayout(filename);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Filename of the stored image a rental picture URL points to, or {@code null} for any other URL.
+     * Picture URLs are percent-encoded while files are stored under their decoded name, e.g.
+     * {@code Ma%20maison.jpg} for {@code Ma maison.jpg}.
+     */
+    public static String filenameOf(String pictureUrl) {
+        int index = pictureUrl.indexOf(IMAGE_PATH);
+        if (index < 0) {
+            return null;
+        }
+        String filename = pictureUrl.substring(index + IMAGE_PATH.length());
+        int query = filename.indexOf('?');
+        try {
+            return UriUtils.decode(query < 0 ? filename : filename.substring(0, query), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            // Not an encoding we produce, so not one of our images
+            return null;
+        }
+    }
+
+    private void checkDeclaredSize(long declaredSize) {
+        long maxBytes = uploadProperties.getMaxSize().toBytes();
+        if (declaredSize > maxBytes) {
+            throw new ImageTooLargeException(maxBytes);
+        }
+    }
+
+    private ReentrantLock lockFor(String filename) {
+        return locks[Math.floorMod(filename.hashCode(), locks.length)];
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
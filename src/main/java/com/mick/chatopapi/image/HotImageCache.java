@@ -0,0 +1,158 @@
+package com.mick.chatopapi.image;
+
+import com.mick.chatopapi.configuration.HotImageCacheProperties;
+import com.mick.chatopapi.image.storage.ImageStorage;
+import com.mick.chatopapi.image.storage.StoredImage;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.core.io.Resource;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * LRU cache of the most requested images, held in direct buffers so the bytes stay off the
+ * GC heap. The total size is bounded; larger images are always streamed from storage.
+ * The budget counts the images currently cached, not native memory: an evicted buffer is only
+ * freed once the GC collects it, so native usage can run above the budget until then.
+ */
+@Component
+public class HotImageCache {
+
+    private final ImageStorage imageStorage;
+    private final long maxBytes;
+    private final long maxEntryBytes;
+    // Access-ordered, so iteration starts with the least recently used image
+    private final LinkedHashMap<String, CachedImage> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long residentBytes;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    public HotImageCache(HotImageCacheProperties properties, ImageStorage imageStorage, MeterRegistry meterRegistry) {
+        this.imageStorage = imageStorage;
+        this.maxBytes = properties.getMaxSize().toBytes();
+        this.maxEntryBytes = Math.min(properties.getMaxEntrySize().toBytes(), maxBytes);
+        FunctionCounter.builder("chatop.images.cache.requests", hits, LongAdder::sum)
+                .tag("result", "hit").register(meterRegistry);
+        FunctionCounter.builder("chatop.images.cache.requests", misses, LongAdder::sum)
+                .tag("result", "miss").register(meterRegistry);
+        Gauge.builder("chatop.images.cache.hit.ratio", this, HotImageCache::hitRatio).register(meterRegistry);
+        Gauge.builder("chatop.images.cache.resident.bytes", this, HotImageCache::residentBytes)
+                .baseUnit("bytes").register(meterRegistry);
+    }
+
+    /**
+     * Returns the image, from memory when it is hot, or {@code null} when it is not stored.
+     * Images small enough to be cached are loaded on their first request. {@code stored} saves
+     * a storage lookup when the caller already has it and may be {@code null}.
+     */
+    public CachedImage get(String key, StoredImage stored) throws IOException {
+        CachedImage cached;
+        synchronized (entries) {
+            cached = entries.get(key);
+        }
+        if (cached != null) {
+            hits.increment();
+            return cached;
+        }
+        if (stored == null) {
+            stored = imageStorage.find(key);
+            if (stored == null) {
+                return null;
+            }
+        }
+        misses.increment();
+
+        Resource resource = stored.resource();
+        if (stored.size() < 0 || stored.size() > maxEntryBytes) {
+            return new CachedImage(resource, ImageContentTypes.detect(resource), stored.lastModified());
+        }
+        ByteBuffer buffer = ByteBuffer.allocateDirect((int) stored.size());
+        boolean longer;
+        try (InputStream inputStream = resource.getInputStream()) {
+            byte[] chunk = new byte[8192];
+            int read;
+            while (buffer.hasRemaining() && (read = inputStream.read(chunk, 0, Math.min(chunk.length, buffer.remaining()))) >= 0) {
+                buffer.put(chunk, 0, read);
+            }
+            longer = inputStream.read() >= 0;
+        }
+        buffer.flip();
+        // The file changed since its size was read: serve it from storage rather than cache a truncated copy
+        if (longer || buffer.limit() != stored.size()) {
+            return new CachedImage(resource, ImageContentTypes.detect(resource), stored.lastModified());
+        }
+        byte[] header = new byte[Math.min(ImageContentTypes.HEADER_LENGTH, buffer.remaining())];
+        buffer.duplicate().get(header);
+        MediaType contentType = ImageContentTypes.detect(header);
+        if (contentType == null) {
+            contentType = ImageContentTypes.detect(resource);
+        }
+        cached = new CachedImage(new ByteBufferResource(buffer, key), contentType, stored.lastModified());
+        put(key, cached);
+        return cached;
+    }
+
+    /**
+     * Returns the cached image, or {@code null} when it is not in memory. Never reads the storage.
+     */
+    public CachedImage peek(String key) {
+        synchronized (entries) {
+            return entries.get(key);
+        }
+    }
+
+    public void invalidate(String key) {
+        synchronized (entries) {
+            CachedImage removed = entries.remove(key);
+            if (removed != null) {
+                residentBytes -= removed.size();
+            }
+        }
+    }
+
+    public long residentBytes() {
+        synchronized (entries) {
+            return residentBytes;
+        }
+    }
+
+    public double hitRatio() {
+        long hitCount = hits.sum();
+        long total = hitCount + misses.sum();
+        return total == 0 ? 0 : (double) hitCount / total;
+    }
+
+    private void put(String key, CachedImage image) {
+        synchronized (entries) {
+            CachedImage previous = entries.put(key, image);
+            residentBytes += image.size() - (previous == null ? 0 : previous.size());
+            // Evicted buffers are released by the GC once no response is still reading them
+            Iterator<Map.Entry<String, CachedImage>> eldest = entries.entrySet().iterator();
+            while (residentBytes > maxBytes && eldest.hasNext()) {
+                residentBytes -= eldest.next().getValue().size();
+                eldest.remove();
+            }
+        }
+    }
+
+    public record CachedImage(Resource resource, MediaType contentType, long lastModified) {
+
+        long size() {
+            try {
+                return resource.contentLength();
+            } catch (IOException e) {
+                return 0;
+            }
+        }
+    }
+}
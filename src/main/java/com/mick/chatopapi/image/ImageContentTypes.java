@@ -0,0 +1,77 @@
+package com.mick.chatopapi.image;
+
+import org.springframework.core.io.Resource;
+import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * Detects image types from their leading bytes, falling back to the file extension.
+ */
+public final class ImageContentTypes {
+
+    private static final MediaType IMAGE_WEBP = MediaType.parseMediaType("image/webp");
+    static final int HEADER_LENGTH = 12;
+
+    private ImageContentTypes() {
+    }
+
+    public static MediaType detect(Path file) throws IOException {
+        byte[] header;
+        try (InputStream inputStream = Files.newInputStream(file)) {
+            header = inputStream.readNBytes(HEADER_LENGTH);
+        }
+        MediaType detected = detect(header);
+        if (detected != null) {
+            return detected;
+        }
+        return MediaTypeFactory.getMediaType(file.getFileName().toString())
+                .orElse(MediaType.APPLICATION_OCTET_STREAM);
+    }
+
+    public static MediaType detect(Resource resource) throws IOException {
+        byte[] header;
+        try (InputStream inputStream = resource.getInputStream()) {
+            header = inputStream.readNBytes(HEADER_LENGTH);
+        }
+        MediaType detected = detect(header);
+        if (detected != null) {
+            return detected;
+        }
+        return MediaTypeFactory.getMediaType(resource).orElse(MediaType.APPLICATION_OCTET_STREAM);
+    }
+
+    public static MediaType detect(byte[] header) {
+        if (startsWith(header, 0xFF, 0xD8, 0xFF)) {
+            return MediaType.IMAGE_JPEG;
+        }
+        if (startsWith(header, 0x89, 'P', 'N', 'G', 0x0D, 0x0A, 0x1A, 0x0A)) {
+            return MediaType.IMAGE_PNG;
+        }
+        if (startsWith(header, 'G', 'I', 'F', '8')) {
+            return MediaType.IMAGE_GIF;
+        }
+        if (startsWith(header, 'R', 'I', 'F', 'F') && header.length >= HEADER_LENGTH
+                && Arrays.equals(header, 8, 12, new byte[]{'W', 'E', 'B', 'P'}, 0, 4)) {
+            return IMAGE_WEBP;
+        }
+        return null;
+    }
+
+    private static boolean startsWith(byte[] header, int... signature) {
+        if (header.length < signature.length) {
+            return false;
+        }
+        for (int i = 0; i < signature.length; i++) {
+            if ((header[i] & 0xFF) != signature[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,69 @@
+package com.mick.chatopapi.image;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+/**
+ * Places each image under two levels of hex prefix directories, e.g. {@code ab/cd/abcd…jpg},
+ * so no directory holds more than a few files. Images written before sharding still sit
+ * directly in the upload directory and are found there until they are migrated.
+ */
+public final class ImageLayout {
+
+    private ImageLayout() {
+    }
+
+    /**
+     * Where the image is written. Content-addressed names shard on their own leading hex digits,
+     * so an image and its variants share a directory; other names shard on a hash of the name.
+     */
+    public static Path shardedPath(Path root, String filename) {
+        String prefix = isHexPrefixed(filename) ? filename.substring(0, 4).toLowerCase() : hash(filename);
+        return root.resolve(prefix.substring(0, 2)).resolve(prefix.substring(2, 4)).resolve(filename);
+    }
+
+    public static Path flatPath(Path root, String filename) {
+        return root.resolve(filename);
+    }
+
+    /**
+     * Path of the existing file, looking at the sharded location first. Falls back to the sharded
+     * path, which is also right when the migration moved the file between the two checks.
+     */
+    public static Path locate(Path root, String filename) {
+        Path sharded = shardedPath(root, filename);
+        if (Files.exists(sharded)) {
+            return sharded;
+        }
+        Path flat = flatPath(root, filename);
+        if (Files.exists(flat)) {
+            return flat;
+        }
+        return sharded;
+    }
+
+    private static boolean isHexPrefixed(String filename) {
+        if (filename.length() < 5) {
+            return false;
+        }
+        for (int i = 0; i < 4; i++) {
+            if (Character.digit(filename.charAt(i), 16) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String hash(String filename) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(filename.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest, 0, 2);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package com.mick.chatopapi.image;
+
+import com.mick.chatopapi.image.storage.ImageStorage;
+import com.mick.chatopapi.image.storage.LocalImageStorage;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+/**
+ * Moves images from the flat upload directory into the sharded layout, one batch at a time,
+ * while the application keeps serving them from whichever location they are in.
+ */
+@Component
+public class ImageLayoutMigration {
+
+    private static final Logger logger = LoggerFactory.getLogger(ImageLayoutMigration.class);
+
+    private final ContentAddressedImageStore contentAddressedImageStore;
+    private final LocalImageStorage localImageStorage;
+    private Thread worker;
+
+    @Value("${chatop.images.layout-migration.enabled:true}")
+    private boolean enabled;
+
+    @Value("${chatop.images.layout-migration.batch-size:500}")
+    private int batchSize;
+
+    @Value("${chatop.images.layout-migration.batch-pause:1s}")
+    private Duration batchPause;
+
+    public ImageLayoutMigration(ContentAddressedImageStore contentAddressedImageStore, ImageStorage imageStorage) {
+        this.contentAddressedImageStore = contentAddressedImageStore;
+        // Only the local filesystem storage has a flat layout to migrate from
+        this.localImageStorage = imageStorage instanceof LocalImageStorage local ? local : null;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!enabled || localImageStorage == null) {
+            return;
+        }
+        worker = Thread.ofPlatform().name("image-layout-migration").daemon(true).start(() -> {
+            try {
+                long start = System.currentTimeMillis();
+                long migrated = migrate();
+                if (migrated > 0) {
+                    logger.info("Moved {} images to the sharded layout in {} ms", migrated, System.currentTimeMillis() - start);
+                }
+            } catch (IOException | RuntimeException e) {
+                logger.error("Image layout migration failed, it will resume on next startup", e);
+            }
+        });
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (worker != null) {
+            worker.interrupt();
+        }
+    }
+
+    /**
+     * Moves every flat image and returns how many were moved. Stops early when interrupted.
+     */
+    long migrate() throws IOException {
+        long migrated = 0;
+        int inBatch = 0;
+        try (Stream<String> filenames = localImageStorage.listFlat()) {
+            Iterator<String> iterator = filenames.iterator();
+            while (iterator.hasNext()) {
+                if (contentAddressedImageStore.migrateToShardedLayout(iterator.next())) {
+                    migrated++;
+                }
+                if (++inBatch == batchSize) {
+                    inBatch = 0;
+                    if (!pause()) {
+                        break;
+                    }
+                }
+            }
+        }
+        return migrated;
+    }
+
+    private boolean pause() {
+        try {
+            Thread.sleep(batchPause);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
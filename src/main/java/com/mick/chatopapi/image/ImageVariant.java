@@ -0,0 +1,54 @@
+package com.mick.chatopapi.image;
+
+public enum ImageVariant {
+    THUMBNAIL("thumb", 200),
+    MEDIUM("medium", 800);
+
+    private final String suffix;
+    private final int maxDimension;
+
+    ImageVariant(String suffix, int maxDimension) {
+        this.suffix = suffix;
+        this.maxDimension = maxDimension;
+    }
+
+    public int getMaxDimension() {
+        return maxDimension;
+    }
+
+    /**
+     * Name of this variant of the given original, e.g. {@code abc.jpg} becomes {@code abc_thumb.jpg}.
+     */
+    public String filenameFor(String originalFilename) {
+        int dot = originalFilename.lastIndexOf('.');
+        if (dot < 0) {
+            return originalFilename + "_" + suffix;
+        }
+        return originalFilename.substring(0, dot) + "_" + suffix + originalFilename.substring(dot);
+    }
+
+    /**
+     * Name of the original a variant was generated from, or {@code null} when the file is not a variant.
+     */
+    public static String originalOf(String filename) {
+        int dot = filename.lastIndexOf('.');
+        String base = dot < 0 ? filename : filename.substring(0, dot);
+        String extension = dot < 0 ? "" : filename.substring(dot);
+        for (ImageVariant variant : values()) {
+            String marker = "_" + variant.suffix;
+            if (base.endsWith(marker) && base.length() > marker.length()) {
+                return base.substring(0, base.length() - marker.length()) + extension;
+            }
+        }
+        return null;
+    }
+
+    public static ImageVariant fromValue(String value) {
+        for (ImageVariant variant : values()) {
+            if (variant.name().equalsIgnoreCase(value) || variant.suffix.equalsIgnoreCase(value)) {
+                return variant;
+            }
+        }
+        throw new IllegalArgumentException("Unknown image size: " + value);
+    }
+}
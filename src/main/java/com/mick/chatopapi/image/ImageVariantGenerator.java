@@ -0,0 +1,174 @@
+package com.mick.chatopapi.image;
+
+import com.mick.chatopapi.configuration.ImageVariantProperties;
+import com.mick.chatopapi.image.storage.ImageStorage;
+import com.mick.chatopapi.image.storage.StoredImage;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Iterator;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Generates resized variants of stored images on a bounded background pool. Uploads never
+ * wait for it: when the pool is saturated the work is dropped and the original is served instead.
+ * Images declaring more pixels than the cap are never decoded, as a small file can declare a huge bitmap.
+ */
+@Component
+public class ImageVariantGenerator {
+
+    private static final Logger logger = LoggerFactory.getLogger(ImageVariantGenerator.class);
+
+    private final ImageStorage imageStorage;
+    private final ThreadPoolExecutor executor;
+    private final long maxPixels;
+
+    @Value("${spring.servlet.multipart.location}")
+    private String uploadDir;
+
+    public ImageVariantGenerator(ImageVariantProperties properties, ImageStorage imageStorage) {
+        this.imageStorage = imageStorage;
+        this.maxPixels = properties.getMaxPixels();
+        this.executor = new ThreadPoolExecutor(properties.getWorkers(), properties.getWorkers(), 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(properties.getQueueCapacity()),
+                Thread.ofPlatform().name("image-variants-", 0).daemon(true).factory());
+    }
+
+    public void generateAsync(String filename) {
+        try {
+            executor.execute(() -> generate(filename));
+        } catch (RejectedExecutionException e) {
+            logger.warn("Image variant queue is full, {} will be served without variants", filename);
+        }
+    }
+
+    void generate(String filename) {
+        String format = formatOf(filename);
+        if (format == null) {
+            return;
+        }
+        try {
+            StoredImage original = imageStorage.find(filename);
+            if (original == null) {
+                return;
+            }
+            BufferedImage image = read(original, filename);
+            if (image == null) {
+                return;
+            }
+            Path workDir = Paths.get(uploadDir);
+            Files.createDirectories(workDir);
+            for (ImageVariant variant : ImageVariant.values()) {
+                String variantName = variant.filenameFor(filename);
+                if (!isLargerThan(image, variant.getMaxDimension()) || imageStorage.find(variantName) != null) {
+                    continue;
+                }
+                BufferedImage resized = resize(image, variant.getMaxDimension(), format);
+                Path tempFile = Files.createTempFile(workDir, "variant-", ".tmp");
+                try {
+                    ImageIO.write(resized, format, tempFile.toFile());
+                    imageStorage.store(variantName, tempFile);
+                } finally {
+                    Files.deleteIfExists(tempFile);
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Unable to generate variants for {}: {}", filename, e.getMessage());
+        }
+    }
+
+    /**
+     * Decodes the image once its declared dimensions are known to be under the pixel cap.
+     * Returns null when the format is not readable or the image is too large.
+     */
+    private BufferedImage read(StoredImage original, String filename) throws IOException {
+        try (InputStream inputStream = original.resource().getInputStream();
+             ImageInputStream imageInputStream = ImageIO.createImageInputStream(inputStream)) {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(imageInputStream);
+            if (!readers.hasNext()) {
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(imageInputStream, true, true);
+                long pixels = (long) reader.getWidth(0) * reader.getHeight(0);
+                if (pixels > maxPixels) {
+                    logger.warn("Not generating variants for {}: {}x{} exceeds the {} pixel limit",
+                            filename, reader.getWidth(0), reader.getHeight(0), maxPixels);
+                    return null;
+                }
+                return reader.read(0);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    public void deleteVariants(String filename) {
+        for (ImageVariant variant : ImageVariant.values()) {
+            try {
+                imageStorage.delete(variant.filenameFor(filename));
+            } catch (IOException e) {
+                logger.warn("Unable to delete {} variant of {}: {}", variant, filename, e.getMessage());
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private static boolean isLargerThan(BufferedImage image, int maxDimension) {
+        return image.getWidth() > maxDimension || image.getHeight() > maxDimension;
+    }
+
+    private static BufferedImage resize(BufferedImage image, int maxDimension, String format) {
+        double scale = (double) maxDimension / Math.max(image.getWidth(), image.getHeight());
+        int width = Math.max(1, (int) Math.round(image.getWidth() * scale));
+        int height = Math.max(1, (int) Math.round(image.getHeight() * scale));
+        int type = "jpg".equals(format) ? BufferedImage.TYPE_INT_RGB : BufferedImage.TYPE_INT_ARGB;
+
+        BufferedImage resized = new BufferedImage(width, height, type);
+        Graphics2D graphics = resized.createGraphics();
+        try {
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            graphics.drawImage(image, 0, 0, width, height, null);
+        } finally {
+            graphics.dispose();
+        }
+        return resized;
+    }
+
+    private static String formatOf(String filename) {
+        String lowerCase = filename.toLowerCase();
+        if (lowerCase.endsWith(".jpg") || lowerCase.endsWith(".jpeg")) {
+            return "jpg";
+        }
+        if (lowerCase.endsWith(".png")) {
+            return "png";
+        }
+        if (lowerCase.endsWith(".gif")) {
+            return "gif";
+        }
+        return null;
+    }
+}
@@ -0,0 +1,228 @@
+package com.mick.chatopapi.image;
+
+import com.mick.chatopapi.configuration.OrphanImageCollectorProperties;
+import com.mick.chatopapi.dto.ImageRefCount;
+import com.mick.chatopapi.entity.RentalEntity;
+import com.mick.chatopapi.image.storage.ImageStorage;
+import com.mick.chatopapi.image.storage.StoredImage;
+import com.mick.chatopapi.repository.ImageRepository;
+import com.mick.chatopapi.repository.RentalRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Deletes stored images that no rental points to any more: files left behind by a failed
+ * insert, a failed release or a delete race. The storage listing is walked in batches, each
+ * looked up against the rentals and reference counts by key, so neither side is ever held in
+ * memory as a whole; files younger than the grace period are never touched.
+ * The first collection after startup fills in the picture filename of rentals saved before it
+ * was stored, as the purge relies on it to tell whether an image is still referenced.
+ */
+@Component
+public class OrphanImageCollector {
+
+    private static final Logger logger = LoggerFactory.getLogger(OrphanImageCollector.class);
+    private static final Limit BACKFILL_BATCH = Limit.of(500);
+
+    private final OrphanImageCollectorProperties properties;
+    private final RentalRepository rentalRepository;
+    private final ImageRepository imageRepository;
+    private final ContentAddressedImageStore contentAddressedImageStore;
+    private final ImageStorage imageStorage;
+    private final Counter reclaimedBytes;
+    private final Counter deletedFiles;
+    private final TransactionTemplate transaction;
+    private ScheduledExecutorService scheduler;
+    private boolean pictureFilenamesBackfilled;
+
+    public OrphanImageCollector(OrphanImageCollectorProperties properties,
+                                RentalRepository rentalRepository,
+                                ImageRepository imageRepository,
+                                ContentAddressedImageStore contentAddressedImageStore,
+                                ImageStorage imageStorage,
+                                PlatformTransactionManager transactionManager,
+                                MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.rentalRepository = rentalRepository;
+        this.imageRepository = imageRepository;
+        this.contentAddressedImageStore = contentAddressedImageStore;
+        this.imageStorage = imageStorage;
+        this.transaction = new TransactionTemplate(transactionManager);
+        String dryRun = String.valueOf(properties.isDryRun());
+        this.reclaimedBytes = Counter.builder("chatop.images.orphans.reclaimed")
+                .baseUnit("bytes")
+                .tag("dry_run", dryRun)
+                .register(meterRegistry);
+        this.deletedFiles = Counter.builder("chatop.images.orphans.deleted")
+                .tag("dry_run", dryRun)
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(
+                Thread.ofPlatform().name("orphan-image-collector").daemon(true).factory());
+        long intervalMillis = properties.getInterval().toMillis();
+        scheduler.scheduleWithFixedDelay(this::collectSafely, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    /**
+     * Runs one collection and returns the number of bytes reclaimed, or that would have been in dry-run mode.
+     */
+    public long collect() throws IOException {
+        if (!pictureFilenamesBackfilled) {
+            backfillPictureFilenames();
+            pictureFilenamesBackfilled = true;
+        }
+        Instant cutoff = Instant.now().minus(properties.getGracePeriod());
+        long reclaimed = 0;
+        try (Stream<String> filenames = imageStorage.list()) {
+            Iterator<String> iterator = filenames.iterator();
+            // A layout migration or an upload still being staged can briefly list a name twice
+            Set<String> batch = new LinkedHashSet<>();
+            while (iterator.hasNext() && !Thread.currentThread().isInterrupted()) {
+                batch.add(iterator.next());
+                if (batch.size() == properties.getBatchSize() || !iterator.hasNext()) {
+                    reclaimed += collect(batch, cutoff);
+                    batch.clear();
+                }
+            }
+        }
+        return reclaimed;
+    }
+
+    private long collect(Set<String> batch, Instant cutoff) throws IOException {
+        // Read before the references, so a purge can tell an image stored again since then
+        Map<String, Integer> refCounts = refCounts(batch);
+        Set<String> referenced = referencedFilenames(batch);
+
+        long reclaimed = 0;
+        for (String filename : batch) {
+            if (referenced.contains(filename) || isLiveVariant(filename, referenced)) {
+                continue;
+            }
+            StoredImage image = imageStorage.find(filename);
+            if (image == null || Instant.ofEpochMilli(image.lastModified()).isAfter(cutoff)) {
+                continue;
+            }
+            reclaimed += delete(filename, image.size(), refCounts.getOrDefault(filename, 0));
+            if (Thread.currentThread().isInterrupted()) {
+                break;
+            }
+        }
+        return reclaimed;
+    }
+
+    /**
+     * Derives the picture filename of rentals that have none yet, one batch per transaction.
+     * Rentals with an external picture keep none, so the walk goes by id rather than until none is left.
+     */
+    private void backfillPictureFilenames() {
+        Integer lastId = 0;
+        while (lastId != null) {
+            Integer after = lastId;
+            lastId = transaction.execute(status -> {
+                List<RentalEntity> rentals = rentalRepository.findWithoutPictureFilenameAfter(after, BACKFILL_BATCH);
+                // Setting the picture again derives its filename, which is flushed on commit
+                rentals.forEach(rental -> rental.setPicture(rental.getPicture()));
+                return rentals.size() < BACKFILL_BATCH.max() ? null : rentals.get(rentals.size() - 1).getId();
+            });
+        }
+    }
+
+    private void collectSafely() {
+        try {
+            long reclaimed = collect();
+            if (reclaimed > 0) {
+                logger.info("Orphan image collection {} {} bytes", properties.isDryRun() ? "would reclaim" : "reclaimed", reclaimed);
+            }
+        } catch (IOException | RuntimeException e) {
+            logger.error("Orphan image collection failed", e);
+        }
+    }
+
+    private long delete(String filename, long size, int refCount) throws IOException {
+        if (properties.isDryRun()) {
+            logger.info("Dry run: would delete orphan image {} ({} bytes)", filename, size);
+        } else if (ImageVariant.originalOf(filename) != null) {
+            imageStorage.delete(filename);
+        } else if (!contentAddressedImageStore.purgeIfUnreferenced(filename, refCount)) {
+            logger.debug("Image {} was referenced again, keeping it", filename);
+            return 0;
+        }
+        reclaimedBytes.increment(size);
+        deletedFiles.increment();
+        throttle();
+        return size;
+    }
+
+    private void throttle() {
+        try {
+            TimeUnit.MILLISECONDS.sleep(1000L / Math.max(1, properties.getMaxDeletesPerSecond()));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * A variant is kept as long as the original it was generated from is referenced.
+     */
+    private static boolean isLiveVariant(String filename, Set<String> referenced) {
+        String original = ImageVariant.originalOf(filename);
+        return original != null && referenced.contains(original);
+    }
+
+    private Map<String, Integer> refCounts(Set<String> filenames) {
+        Map<String, Integer> refCounts = new HashMap<>();
+        for (ImageRefCount image : imageRepository.findRefCounts(filenames)) {
+            refCounts.put(image.filename(), image.refCount());
+        }
+        return refCounts;
+    }
+
+    /**
+     * Which of the images, or of the originals of the variants among them, a rental points to.
+     */
+    private Set<String> referencedFilenames(Set<String> filenames) {
+        Set<String> candidates = new HashSet<>(filenames);
+        for (String filename : filenames) {
+            String original = ImageVariant.originalOf(filename);
+            if (original != null) {
+                candidates.add(original);
+            }
+        }
+        return new HashSet<>(rentalRepository.findPictureFilenamesIn(candidates));
+    }
+}
@@ -0,0 +1,41 @@
+package com.mick.chatopapi.image.storage;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+/**
+ * Where rental images live. Images are addressed by filename only; how and where the bytes
+ * are kept is up to the implementation, so nodes can share a remote store.
+ */
+public interface ImageStorage {
+
+    /**
+     * Stores the content of {@code source} under {@code filename}, replacing any previous content.
+     * The source file may be moved away by the call; callers must not rely on it afterwards.
+     */
+    void store(String filename, Path source) throws IOException;
+
+    /**
+     * Returns the stored image, or {@code null} when there is none. Only metadata is fetched;
+     * the content is read when the returned resource is opened.
+     */
+    StoredImage find(String filename) throws IOException;
+
+    void delete(String filename) throws IOException;
+
+    /**
+     * Streams the names of every stored image, in no particular order. Callers must close the stream.
+     */
+    Stream<String> list() throws IOException;
+
+    /**
+     * Rejects names that could escape the storage root or address something other than an image.
+     */
+    static void checkFilename(String filename) {
+        if (filename == null || filename.isBlank() || filename.contains("/") || filename.contains("\\")
+                || filename.equals(".") || filename.equals("..")) {
+            throw new IllegalArgumentException("Invalid image name: " + filename);
+        }
+    }
+}
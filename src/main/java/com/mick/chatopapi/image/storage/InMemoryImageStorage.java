@@ -0,0 +1,57 @@
+package com.mick.chatopapi.image.storage;
+
+import org.springframework.core.io.ByteArrayResource;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+/**
+ * Keeps images in memory. Meant for tests and local experiments: content is lost on restart.
+ */
+public class InMemoryImageStorage implements ImageStorage {
+
+    private final Map<String, StoredContent> images = new ConcurrentHashMap<>();
+
+    @Override
+    public void store(String filename, Path source) throws IOException {
+        ImageStorage.checkFilename(filename);
+        byte[] content = Files.readAllBytes(source);
+        images.put(filename, new StoredContent(content, System.currentTimeMillis()));
+        Files.deleteIfExists(source);
+    }
+
+    public void store(String filename, byte[] content) {
+        ImageStorage.checkFilename(filename);
+        images.put(filename, new StoredContent(content.clone(), System.currentTimeMillis()));
+    }
+
+    @Override
+    public StoredImage find(String filename) {
+        ImageStorage.checkFilename(filename);
+        StoredContent stored = images.get(filename);
+        if (stored == null) {
+            return null;
+        }
+        return new StoredImage(new ByteArrayResource(stored.content(), filename), stored.content().length,
+                stored.lastModified());
+    }
+
+    @Override
+    public void delete(String filename) {
+        ImageStorage.checkFilename(filename);
+        images.remove(filename);
+    }
+
+    @Override
+    public Stream<String> list() {
+        return List.copyOf(images.keySet()).stream();
+    }
+
+    private record StoredContent(byte[] content, long lastModified) {
+    }
+}
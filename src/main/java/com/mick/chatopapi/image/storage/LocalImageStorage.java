@@ -0,0 +1,107 @@
+package com.mick.chatopapi.image.storage;
+
+import com.mick.chatopapi.image.ImageLayout;
+import org.springframework.core.io.FileSystemResource;
+
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.stream.Stream;
+
+/**
+ * Keeps images on the local filesystem in the sharded layout described by {@link ImageLayout},
+ * still reading images left in the flat layout until they are migrated.
+ */
+public class LocalImageStorage implements ImageStorage {
+
+    private final Path root;
+
+    public LocalImageStorage(Path root) {
+        this.root = root.toAbsolutePath().normalize();
+    }
+
+    @Override
+    public void store(String filename, Path source) throws IOException {
+        ImageStorage.checkFilename(filename);
+        Path target = ImageLayout.shardedPath(root, filename);
+        Files.createDirectories(target.getParent());
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            // Source on another filesystem: copy next to the target first so readers never see a partial file
+            Path tempFile = Files.createTempFile(target.getParent(), "store-", ".tmp");
+            try {
+                Files.copy(source, tempFile, StandardCopyOption.REPLACE_EXISTING);
+                Files.move(tempFile, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } finally {
+                Files.deleteIfExists(tempFile);
+            }
+        }
+    }
+
+    @Override
+    public StoredImage find(String filename) throws IOException {
+        ImageStorage.checkFilename(filename);
+        Path file = ImageLayout.locate(root, filename);
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+            if (!attributes.isRegularFile()) {
+                return null;
+            }
+            return new StoredImage(new FileSystemResource(file), attributes.size(),
+                    attributes.lastModifiedTime().toMillis());
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public void delete(String filename) throws IOException {
+        ImageStorage.checkFilename(filename);
+        Files.deleteIfExists(ImageLayout.shardedPath(root, filename));
+        Files.deleteIfExists(ImageLayout.flatPath(root, filename));
+    }
+
+    @Override
+    public Stream<String> list() throws IOException {
+        if (!Files.isDirectory(root)) {
+            return Stream.empty();
+        }
+        return Files.walk(root, 3)
+                .filter(Files::isRegularFile)
+                .map(file -> file.getFileName().toString());
+    }
+
+    /**
+     * Moves an image written before sharding into its sharded directory. Returns false when
+     * there was nothing to move.
+     */
+    public boolean migrateToShardedLayout(String filename) throws IOException {
+        ImageStorage.checkFilename(filename);
+        Path flat = ImageLayout.flatPath(root, filename);
+        if (!Files.isRegularFile(flat)) {
+            return false;
+        }
+        Path sharded = ImageLayout.shardedPath(root, filename);
+        Files.createDirectories(sharded.getParent());
+        Files.move(flat, sharded, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        return true;
+    }
+
+    /**
+     * Names of the images still in the flat layout. Callers must close the stream.
+     */
+    public Stream<String> listFlat() throws IOException {
+        if (!Files.isDirectory(root)) {
+            return Stream.empty();
+        }
+        return Files.list(root)
+                .filter(Files::isRegularFile)
+                .map(file -> file.getFileName().toString())
+                .filter(filename -> !filename.endsWith(".tmp"));
+    }
+}
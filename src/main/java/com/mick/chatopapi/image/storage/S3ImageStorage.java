@@ -0,0 +1,318 @@
+package com.mick.chatopapi.image.storage;
+
+import com.mick.chatopapi.image.ImageContentTypes;
+import org.springframework.core.io.AbstractResource;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Keeps images in an S3-compatible bucket (AWS S3, MinIO, …), addressed path-style as
+ * {@code <endpoint>/<bucket>/<prefix><filename>}. Requests are signed with AWS Signature V4
+ * using the JDK HTTP client, so no SDK is needed.
+ */
+public class S3ImageStorage implements ImageStorage {
+
+    private static final DateTimeFormatter AMZ_DATE = DateTimeFormatter.ofPattern("yyyyMMdd'T'HHmmss'Z'");
+    private static final DateTimeFormatter AMZ_DAY = DateTimeFormatter.ofPattern("yyyyMMdd");
+    private static final String UNSIGNED_PAYLOAD = "UNSIGNED-PAYLOAD";
+    private static final Pattern KEY = Pattern.compile("<Key>(.*?)</Key>");
+    private static final Pattern NEXT_TOKEN = Pattern.compile("<NextContinuationToken>(.*?)</NextContinuationToken>");
+
+    private final HttpClient httpClient;
+    private final URI endpoint;
+    private final String region;
+    private final String bucket;
+    private final String keyPrefix;
+    private final String accessKey;
+    private final String secretKey;
+
+    public S3ImageStorage(URI endpoint, String region, String bucket, String keyPrefix,
+                          String accessKey, String secretKey) {
+        this.httpClient = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(10)).build();
+        this.endpoint = endpoint;
+        this.region = region;
+        this.bucket = bucket;
+        this.keyPrefix = keyPrefix == null ? "" : keyPrefix;
+        this.accessKey = accessKey;
+        this.secretKey = secretKey;
+    }
+
+    @Override
+    public void store(String filename, Path source) throws IOException {
+        ImageStorage.checkFilename(filename);
+        HttpRequest request = signed("PUT", objectPath(filename), Map.of())
+                .header("Content-Type", ImageContentTypes.detect(source).toString())
+                .PUT(HttpRequest.BodyPublishers.ofFile(source))
+                .build();
+        HttpResponse<String> response = send(request, HttpResponse.BodyHandlers.ofString());
+        expectSuccess(response, "store " + filename);
+    }
+
+    @Override
+    public StoredImage find(String filename) throws IOException {
+        ImageStorage.checkFilename(filename);
+        HttpRequest request = signed("HEAD", objectPath(filename), Map.of())
+                .method("HEAD", HttpRequest.BodyPublishers.noBody())
+                .build();
+        HttpResponse<Void> response = send(request, HttpResponse.BodyHandlers.discarding());
+        if (response.statusCode() == 404) {
+            return null;
+        }
+        expectSuccess(response, "find " + filename);
+        HttpHeaders headers = response.headers();
+        long size = headers.firstValueAsLong("Content-Length").orElse(-1);
+        long lastModified = headers.firstValue("Last-Modified")
+                .map(value -> ZonedDateTime.parse(value, DateTimeFormatter.RFC_1123_DATE_TIME).toInstant().toEpochMilli())
+                .orElse(0L);
+        return new StoredImage(new ObjectResource(filename, size), size, lastModified);
+    }
+
+    @Override
+    public void delete(String filename) throws IOException {
+        ImageStorage.checkFilename(filename);
+        HttpRequest request = signed("DELETE", objectPath(filename), Map.of()).DELETE().build();
+        HttpResponse<String> response = send(request, HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() != 404) {
+            expectSuccess(response, "delete " + filename);
+        }
+    }
+
+    @Override
+    public Stream<String> list() {
+        Iterator<String> keys = new Iterator<>() {
+            private Iterator<String> page = List.<String>of().iterator();
+            private String continuationToken;
+            private boolean lastPage;
+
+            @Override
+            public boolean hasNext() {
+                while (!page.hasNext() && !lastPage) {
+                    fetchPage();
+                }
+                return page.hasNext();
+            }
+
+            @Override
+            public String next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return page.next();
+            }
+
+            private void fetchPage() {
+                Map<String, String> query = new TreeMap<>();
+                query.put("list-type", "2");
+                query.put("prefix", keyPrefix);
+                if (continuationToken != null) {
+                    query.put("continuation-token", continuationToken);
+                }
+                try {
+                    HttpRequest request = signed("GET", "/" + bucket, query).GET().build();
+                    HttpResponse<String> response = send(request, HttpResponse.BodyHandlers.ofString());
+                    expectSuccess(response, "list images");
+                    List<String> filenames = new ArrayList<>();
+                    Matcher keyMatcher = KEY.matcher(response.body());
+                    while (keyMatcher.find()) {
+                        filenames.add(unescapeXml(keyMatcher.group(1)).substring(keyPrefix.length()));
+                    }
+                    page = filenames.iterator();
+                    Matcher tokenMatcher = NEXT_TOKEN.matcher(response.body());
+                    continuationToken = tokenMatcher.find() ? unescapeXml(tokenMatcher.group(1)) : null;
+                    lastPage = continuationToken == null;
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        };
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(keys, Spliterator.ORDERED), false);
+    }
+
+    private String objectPath(String filename) {
+        return "/" + bucket + "/" + keyPrefix + filename;
+    }
+
+    private HttpRequest.Builder signed(String method, String path, Map<String, String> query) {
+        ZonedDateTime now = ZonedDateTime.now(ZoneOffset.UTC);
+        String amzDate = AMZ_DATE.format(now);
+        String day = AMZ_DAY.format(now);
+        String host = endpoint.getPort() < 0 ? endpoint.getHost() : endpoint.getHost() + ":" + endpoint.getPort();
+        String canonicalPath = encodePath(path);
+        String canonicalQuery = canonicalQuery(query);
+
+        String signedHeaders = "host;x-amz-content-sha256;x-amz-date";
+        String canonicalRequest = method + "\n"
+                + canonicalPath + "\n"
+                + canonicalQuery + "\n"
+                + "host:" + host + "\n"
+                + "x-amz-content-sha256:" + UNSIGNED_PAYLOAD + "\n"
+                + "x-amz-date:" + amzDate + "\n"
+                + "\n"
+                + signedHeaders + "\n"
+                + UNSIGNED_PAYLOAD;
+        String scope = day + "/" + region + "/s3/aws4_request";
+        String stringToSign = "AWS4-HMAC-SHA256\n" + amzDate + "\n" + scope + "\n" + sha256Hex(canonicalRequest);
+
+        byte[] signingKey = hmac(("AWS4" + secretKey).getBytes(StandardCharsets.UTF_8), day);
+        signingKey = hmac(signingKey, region);
+        signingKey = hmac(signingKey, "s3");
+        signingKey = hmac(signingKey, "aws4_request");
+        String signature = HexFormat.of().formatHex(hmac(signingKey, stringToSign));
+
+        String base = endpoint.toString().replaceAll("/+$", "");
+        URI uri = URI.create(base + canonicalPath + (canonicalQuery.isEmpty() ? "" : "?" + canonicalQuery));
+        return HttpRequest.newBuilder(uri)
+                .timeout(Duration.ofSeconds(30))
+                .header("x-amz-date", amzDate)
+                .header("x-amz-content-sha256", UNSIGNED_PAYLOAD)
+                .header("Authorization", "AWS4-HMAC-SHA256 Credential=" + accessKey + "/" + scope
+                        + ", SignedHeaders=" + signedHeaders + ", Signature=" + signature);
+    }
+
+    private <T> HttpResponse<T> send(HttpRequest request, HttpResponse.BodyHandler<T> bodyHandler) throws IOException {
+        try {
+            return httpClient.send(request, bodyHandler);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while calling the image bucket", e);
+        }
+    }
+
+    private static void expectSuccess(HttpResponse<?> response, String action) throws IOException {
+        if (response.statusCode() / 100 != 2) {
+            throw new IOException("Unable to " + action + ": bucket answered " + response.statusCode());
+        }
+    }
+
+    private static String canonicalQuery(Map<String, String> query) {
+        StringBuilder canonical = new StringBuilder();
+        new TreeMap<>(query).forEach((name, value) -> {
+            if (!canonical.isEmpty()) {
+                canonical.append('&');
+            }
+            canonical.append(encode(name)).append('=').append(encode(value));
+        });
+        return canonical.toString();
+    }
+
+    private static String encodePath(String path) {
+        StringBuilder encoded = new StringBuilder();
+        for (String segment : path.substring(1).split("/", -1)) {
+            encoded.append('/').append(encode(segment));
+        }
+        return encoded.toString();
+    }
+
+    private static String encode(String value) {
+        StringBuilder encoded = new StringBuilder();
+        for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+            char c = (char) (b & 0xFF);
+            if ((c >= 'A' && c <= 'Z') || (c >= 'a' && c <= 'z') || (c >= '0' && c <= '9')
+                    || c == '-' || c == '_' || c == '.' || c == '~') {
+                encoded.append(c);
+            } else {
+                encoded.append('%').append(String.format("%02X", b & 0xFF));
+            }
+        }
+        return encoded.toString();
+    }
+
+    private static String unescapeXml(String value) {
+        return value.replace("&lt;", "<").replace("&gt;", ">").replace("&quot;", "\"")
+                .replace("&apos;", "'").replace("&amp;", "&");
+    }
+
+    private static String sha256Hex(String value) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(value.getBytes(StandardCharsets.UTF_8)));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    private static byte[] hmac(byte[] key, String value) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(key, "HmacSHA256"));
+            return mac.doFinal(value.getBytes(StandardCharsets.UTF_8));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HmacSHA256 is not available", e);
+        }
+    }
+
+    /**
+     * Streams the object from the bucket each time it is opened, so it can be read more than once.
+     */
+    private class ObjectResource extends AbstractResource {
+
+        private final String filename;
+        private final long size;
+
+        ObjectResource(String filename, long size) {
+            this.filename = filename;
+            this.size = size;
+        }
+
+        @Override
+        public InputStream getInputStream() throws IOException {
+            HttpRequest request = signed("GET", objectPath(filename), Map.of()).GET().build();
+            HttpResponse<InputStream> response = send(request, HttpResponse.BodyHandlers.ofInputStream());
+            if (response.statusCode() / 100 != 2) {
+                response.body().close();
+                throw new IOException("Unable to read " + filename + ": bucket answered " + response.statusCode());
+            }
+            return response.body();
+        }
+
+        @Override
+        public boolean exists() {
+            return true;
+        }
+
+        @Override
+        public long contentLength() {
+            return size;
+        }
+
+        @Override
+        public String getFilename() {
+            return filename;
+        }
+
+        @Override
+        public String getDescription() {
+            return "S3 object [" + bucket + "/" + keyPrefix + filename + "]";
+        }
+    }
+}
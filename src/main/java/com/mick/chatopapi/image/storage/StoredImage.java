@@ -0,0 +1,9 @@
+package com.mick.chatopapi.image.storage;
+
+import org.springframework.core.io.Resource;
+
+/**
+ * A stored image: a resource that reads its content lazily, with its size and last modification time in millis.
+ */
+public record StoredImage(Resource resource, long size, long lastModified) {
+}
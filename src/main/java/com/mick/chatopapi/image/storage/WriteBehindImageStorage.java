@@ -0,0 +1,167 @@
+package com.mick.chatopapi.image.storage;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.io.FileSystemResource;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Makes writes to a slow store asynchronous. {@link #store} returns as soon as the image is
+ * synced to a local staging directory; background workers then copy it to the delegate.
+ * Staged images are served locally until they are uploaded, and images still staged at
+ * shutdown are uploaded on the next start.
+ */
+public class WriteBehindImageStorage implements ImageStorage {
+
+    private static final Logger logger = LoggerFactory.getLogger(WriteBehindImageStorage.class);
+
+    private final ImageStorage delegate;
+    private final Path stagingDir;
+    private final int workers;
+    private final Duration retryInterval;
+    // Staged images waiting for, or in the middle of, their upload
+    private final Set<String> pending = ConcurrentHashMap.newKeySet();
+    private final Set<String> uploading = ConcurrentHashMap.newKeySet();
+    private ScheduledExecutorService uploader;
+
+    public WriteBehindImageStorage(ImageStorage delegate, Path stagingDir, int workers, Duration retryInterval,
+                                   MeterRegistry meterRegistry) {
+        this.delegate = delegate;
+        this.stagingDir = stagingDir.toAbsolutePath().normalize();
+        this.workers = workers;
+        this.retryInterval = retryInterval;
+        meterRegistry.gauge("chatop.images.storage.staged", pending, Set::size);
+    }
+
+    @PostConstruct
+    public void start() throws IOException {
+        Files.createDirectories(stagingDir);
+        uploader = Executors.newScheduledThreadPool(workers,
+                Thread.ofPlatform().name("image-uploader-", 0).daemon(true).factory());
+        // Picks up images staged before a restart and retries failed uploads
+        long intervalMillis = retryInterval.toMillis();
+        uploader.scheduleWithFixedDelay(this::uploadStaged, 0, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        if (uploader == null) {
+            return;
+        }
+        uploader.shutdown();
+        if (!uploader.awaitTermination(30, TimeUnit.SECONDS)) {
+            uploader.shutdownNow();
+        }
+        if (!pending.isEmpty()) {
+            logger.info("{} staged images will be uploaded on next start", pending.size());
+        }
+    }
+
+    @Override
+    public void store(String filename, Path source) throws IOException {
+        ImageStorage.checkFilename(filename);
+        Path tempFile = Files.createTempFile(stagingDir, "staging-", ".tmp");
+        try {
+            Files.move(source, tempFile, StandardCopyOption.REPLACE_EXISTING);
+            try (FileChannel channel = FileChannel.open(tempFile, StandardOpenOption.WRITE)) {
+                channel.force(true);
+            }
+            Files.move(tempFile, stagingDir.resolve(filename), StandardCopyOption.ATOMIC_MOVE,
+                    StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+        pending.add(filename);
+        submit(filename);
+    }
+
+    @Override
+    public StoredImage find(String filename) throws IOException {
+        ImageStorage.checkFilename(filename);
+        Path staged = stagingDir.resolve(filename);
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(staged, BasicFileAttributes.class);
+            return new StoredImage(new FileSystemResource(staged), attributes.size(),
+                    attributes.lastModifiedTime().toMillis());
+        } catch (NoSuchFileException e) {
+            return delegate.find(filename);
+        }
+    }
+
+    @Override
+    public void delete(String filename) throws IOException {
+        ImageStorage.checkFilename(filename);
+        pending.remove(filename);
+        Files.deleteIfExists(stagingDir.resolve(filename));
+        delegate.delete(filename);
+    }
+
+    @Override
+    public Stream<String> list() throws IOException {
+        return Stream.concat(stagedFilenames(), delegate.list());
+    }
+
+    private void submit(String filename) {
+        try {
+            uploader.execute(() -> upload(filename));
+        } catch (RejectedExecutionException e) {
+            // Shutting down: the image stays staged and is uploaded on next start
+        }
+    }
+
+    private void upload(String filename) {
+        if (!uploading.add(filename)) {
+            return;
+        }
+        try {
+            Path staged = stagingDir.resolve(filename);
+            if (!Files.exists(staged)) {
+                pending.remove(filename);
+                return;
+            }
+            delegate.store(filename, staged);
+            pending.remove(filename);
+            Files.deleteIfExists(staged);
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Unable to upload image {}, will retry: {}", filename, e.getMessage());
+        } finally {
+            uploading.remove(filename);
+        }
+    }
+
+    private void uploadStaged() {
+        try (Stream<String> staged = stagedFilenames()) {
+            staged.forEach(filename -> {
+                pending.add(filename);
+                upload(filename);
+            });
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Unable to scan staged images: {}", e.getMessage());
+        }
+    }
+
+    private Stream<String> stagedFilenames() throws IOException {
+        return Files.list(stagingDir)
+                .map(file -> file.getFileName().toString())
+                .filter(filename -> !filename.endsWith(".tmp"));
+    }
+}
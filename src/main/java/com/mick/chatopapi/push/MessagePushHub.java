@@ -0,0 +1,219 @@
+package com.mick.chatopapi.push;
+
+import com.mick.chatopapi.configuration.MessagePushProperties;
+import com.mick.chatopapi.configuration.MessagePushProperties.OverflowPolicy;
+import com.mick.chatopapi.dto.MessageEvent;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Fans new messages out to the rental owners subscribed over server-sent events.
+ * Each subscription has its own bounded buffer drained by a virtual thread, so publishing
+ * never waits on a slow client and an idle subscriber only costs a parked virtual thread.
+ * A full buffer is handled with the configured {@link OverflowPolicy}.
+ */
+@Component
+public class MessagePushHub {
+
+    private static final Logger logger = LoggerFactory.getLogger(MessagePushHub.class);
+
+    private static final Object HEARTBEAT = new Object();
+    private static final Object CLOSE = new Object();
+
+    private final MessagePushProperties properties;
+    private final Map<Integer, Set<Subscription>> subscriptionsByOwner = new ConcurrentHashMap<>();
+    private final AtomicInteger subscriptionCount = new AtomicInteger();
+    private final ThreadFactory deliveryThreads = Thread.ofVirtual().name("message-push-", 0).factory();
+    private final Counter droppedEvents;
+    private final Counter slowDisconnects;
+    private ScheduledExecutorService heartbeat;
+
+    public MessagePushHub(MessagePushProperties properties, MeterRegistry meterRegistry) {
+        this.properties = properties;
+        meterRegistry.gauge("chatop.messages.push.subscribers", subscriptionCount);
+        this.droppedEvents = Counter.builder("chatop.messages.push.dropped")
+                .description("Events dropped because a subscriber buffer was full")
+                .register(meterRegistry);
+        this.slowDisconnects = Counter.builder("chatop.messages.push.slow.disconnects")
+                .description("Subscribers disconnected because their buffer was full")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void start() {
+        heartbeat = Executors.newSingleThreadScheduledExecutor(
+                Thread.ofPlatform().name("message-push-heartbeat").daemon().factory());
+        long intervalMillis = properties.getHeartbeatInterval().toMillis();
+        heartbeat.scheduleAtFixedRate(this::sendHeartbeats, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (heartbeat != null) {
+            heartbeat.shutdownNow();
+        }
+        subscriptionsByOwner.values().stream()
+                .flatMap(Set::stream)
+                .toList()
+                .forEach(subscription -> subscription.close(true));
+    }
+
+    public SseEmitter subscribe(Integer ownerId) {
+        SseEmitter emitter = newEmitter(properties.getTimeout().toMillis());
+        Subscription subscription = new Subscription(ownerId, emitter);
+        emitter.onCompletion(() -> subscription.close(false));
+        emitter.onTimeout(() -> subscription.close(false));
+        emitter.onError(e -> subscription.close(false));
+        subscriptionsByOwner.compute(ownerId, (id, subscriptions) -> {
+            Set<Subscription> owned = subscriptions == null ? ConcurrentHashMap.newKeySet() : subscriptions;
+            owned.add(subscription);
+            return owned;
+        });
+        subscriptionCount.incrementAndGet();
+        // Sends the response headers right away so the client sees the stream as open
+        subscription.offer(HEARTBEAT);
+        deliveryThreads.newThread(subscription::deliver).start();
+        return emitter;
+    }
+
+    public boolean hasSubscribers() {
+        return subscriptionCount.get() > 0;
+    }
+
+    public void publish(Integer ownerId, MessageEvent event) {
+        Set<Subscription> subscriptions = subscriptionsByOwner.get(ownerId);
+        if (subscriptions == null) {
+            return;
+        }
+        for (Subscription subscription : subscriptions) {
+            if (!subscription.offer(event)) {
+                overflow(subscription, event);
+            }
+        }
+    }
+
+    SseEmitter newEmitter(long timeoutMillis) {
+        return new SseEmitter(timeoutMillis);
+    }
+
+    private void overflow(Subscription subscription, MessageEvent event) {
+        if (properties.getOverflowPolicy() == OverflowPolicy.DISCONNECT) {
+            logger.debug("Disconnecting slow message subscriber of owner {}", subscription.ownerId);
+            slowDisconnects.increment();
+            subscription.close(true);
+            return;
+        }
+        while (!subscription.closed.get() && !subscription.offer(event)) {
+            if (subscription.buffer.poll() != null) {
+                droppedEvents.increment();
+            }
+        }
+    }
+
+    private void sendHeartbeats() {
+        // A full buffer already has something to send, so it needs no heartbeat
+        for (Set<Subscription> subscriptions : subscriptionsByOwner.values()) {
+            subscriptions.forEach(subscription -> subscription.offer(HEARTBEAT));
+        }
+    }
+
+    private void unregister(Subscription subscription) {
+        subscriptionsByOwner.computeIfPresent(subscription.ownerId, (id, subscriptions) -> {
+            subscriptions.remove(subscription);
+            return subscriptions.isEmpty() ? null : subscriptions;
+        });
+        subscriptionCount.decrementAndGet();
+    }
+
+    private final class Subscription {
+
+        private final Integer ownerId;
+        private final SseEmitter emitter;
+        private final BlockingQueue<Object> buffer = new ArrayBlockingQueue<>(properties.getBufferSize());
+        private final AtomicBoolean closed = new AtomicBoolean();
+
+        private Subscription(Integer ownerId, SseEmitter emitter) {
+            this.ownerId = ownerId;
+            this.emitter = emitter;
+        }
+
+        private boolean offer(Object item) {
+            return !closed.get() && buffer.offer(item);
+        }
+
+        private void deliver() {
+            try {
+                long waitMillis = properties.getHeartbeatInterval().toMillis();
+                while (true) {
+                    // CLOSE only wakes the thread up; the timeout covers a CLOSE lost to a concurrent drop
+                    Object item = buffer.poll(waitMillis, TimeUnit.MILLISECONDS);
+                    if (closed.get()) {
+                        return;
+                    }
+                    if (item != null) {
+                        send(item);
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (IOException | IllegalStateException e) {
+                logger.debug("Message subscriber of owner {} went away: {}", ownerId, e.getMessage());
+            } finally {
+                close(true);
+            }
+        }
+
+        private void send(Object item) throws IOException {
+            if (item == HEARTBEAT) {
+                emitter.send(SseEmitter.event().comment("heartbeat"));
+                return;
+            }
+            MessageEvent event = (MessageEvent) item;
+            SseEmitter.SseEventBuilder builder = SseEmitter.event()
+                    .name("message")
+                    .data(event, MediaType.APPLICATION_JSON);
+            if (event.id() != null) {
+                builder.id(String.valueOf(event.id()));
+            }
+            emitter.send(builder);
+        }
+
+        private void close(boolean completeEmitter) {
+            if (!closed.compareAndSet(false, true)) {
+                return;
+            }
+            unregister(this);
+            buffer.clear();
+            while (!buffer.offer(CLOSE)) {
+                buffer.poll();
+            }
+            if (completeEmitter) {
+                try {
+                    emitter.complete();
+                } catch (IllegalStateException e) {
+                    // Already completed by the container
+                }
+            }
+        }
+    }
+}
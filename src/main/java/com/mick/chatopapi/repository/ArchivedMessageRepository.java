@@ -0,0 +1,36 @@
+package com.mick.chatopapi.repository;
+
+import com.mick.chatopapi.dto.MessageDto;
+import com.mick.chatopapi.entity.ArchivedMessageEntity;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+public interface ArchivedMessageRepository extends JpaRepository<ArchivedMessageEntity, Integer> {
+
+    String MESSAGE_DTO_PROJECTION = """
+            select new com.mick.chatopapi.dto.MessageDto(
+                m.id, m.user_id, m.message, m.created_at)
+            from ArchivedMessageEntity m
+            """;
+
+    @Query(MESSAGE_DTO_PROJECTION + """
+             where m.rental_id = :rentalId
+            order by m.created_at desc, m.id desc
+            """)
+    List<MessageDto> findLatestByRental(@Param("rentalId") Integer rentalId, Limit limit);
+
+    @Query(MESSAGE_DTO_PROJECTION + """
+             where m.rental_id = :rentalId
+               and (m.created_at < :createdAt or (m.created_at = :createdAt and m.id < :id))
+            order by m.created_at desc, m.id desc
+            """)
+    List<MessageDto> findByRentalBefore(@Param("rentalId") Integer rentalId,
+                                        @Param("createdAt") LocalDateTime createdAt,
+                                        @Param("id") Integer id,
+                                        Limit limit);
+}
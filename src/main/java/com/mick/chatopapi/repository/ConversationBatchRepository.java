@@ -0,0 +1,108 @@
+package com.mick.chatopapi.repository;
+
+import com.mick.chatopapi.dto.QueuedMessage;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keeps the conversations table in step with the messages. Every method must run in the
+ * transaction that inserts the messages, so a conversation never counts a message that was rolled back.
+ */
+@Repository
+public class ConversationBatchRepository {
+
+    // Assignments are in this order because MySQL evaluates them left to right with the updated values
+    private static final String UPDATE_SQL = """
+            update conversations set
+                last_message_id = case when last_activity <= ? then ? else last_message_id end,
+                last_activity = case when last_activity < ? then ? else last_activity end,
+                message_count = message_count + ?
+            where rental_id = ? and sender_id = ?
+            """;
+
+    private static final String INSERT_SQL = """
+            insert into conversations (rental_id, sender_id, owner_id, last_message_id, last_activity, message_count)
+            select r.id, ?, r.owner_id, ?, ?, ? from rentals r where r.id = ?
+            """;
+
+    private static final String IS_EMPTY_SQL = "select count(*) from (select 1 from conversations limit 1) c";
+
+    private static final String SEED_SQL = """
+            insert into conversations (rental_id, sender_id, owner_id, last_message_id, last_activity, message_count)
+            select m.rental_id, m.user_id, r.owner_id, max(m.id), max(m.created_at), count(*)
+            from (
+                select id, rental_id, user_id, created_at from messages
+                union all
+                select id, rental_id, user_id, created_at from messages_archive
+            ) m
+            join rentals r on r.id = m.rental_id
+            group by m.rental_id, m.user_id, r.owner_id
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public ConversationBatchRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    public void recordMessage(Integer rentalId, Integer senderId, Integer messageId, LocalDateTime createdAt) {
+        record(rentalId, senderId, messageId, createdAt, 1);
+    }
+
+    /**
+     * Records a batch of messages with one statement per conversation.
+     * The ids are the generated ids of the messages, in the same order.
+     */
+    public void recordAll(List<QueuedMessage> messages, List<Integer> messageIds) {
+        Map<List<Integer>, Integer> latest = new LinkedHashMap<>();
+        Map<List<Integer>, Integer> counts = new LinkedHashMap<>();
+        for (int i = 0; i < messages.size(); i++) {
+            QueuedMessage message = messages.get(i);
+            List<Integer> key = List.of(message.rentalId(), message.userId());
+            // Ids grow with insertion order, so on a tie the later message wins, as in the seed
+            latest.merge(key, i, (a, b) -> messages.get(b).createdAt().isBefore(messages.get(a).createdAt()) ? a : b);
+            counts.merge(key, 1, Integer::sum);
+        }
+        latest.forEach((key, index) -> {
+            QueuedMessage message = messages.get(index);
+            record(message.rentalId(), message.userId(), messageIds.get(index), message.createdAt(), counts.get(key));
+        });
+    }
+
+    /**
+     * Fills the conversations from the messages already stored, the first time the table is used.
+     * Must run in a transaction.
+     */
+    public boolean seedIfEmpty() {
+        Integer rows = jdbcTemplate.queryForObject(IS_EMPTY_SQL, Integer.class);
+        if (rows != null && rows > 0) {
+            return false;
+        }
+        jdbcTemplate.update(SEED_SQL);
+        return true;
+    }
+
+    private void record(Integer rentalId, Integer senderId, Integer messageId, LocalDateTime createdAt, int count) {
+        Timestamp activity = Timestamp.valueOf(createdAt);
+        if (update(rentalId, senderId, messageId, activity, count) > 0) {
+            return;
+        }
+        try {
+            jdbcTemplate.update(INSERT_SQL, senderId, messageId, activity, count, rentalId);
+        } catch (DuplicateKeyException e) {
+            // A concurrent first message created the conversation
+            update(rentalId, senderId, messageId, activity, count);
+        }
+    }
+
+    private int update(Integer rentalId, Integer senderId, Integer messageId, Timestamp activity, int count) {
+        return jdbcTemplate.update(UPDATE_SQL, activity, messageId, activity, activity, count, rentalId, senderId);
+    }
+}
@@ -0,0 +1,36 @@
+package com.mick.chatopapi.repository;
+
+import com.mick.chatopapi.dto.ConversationDto;
+import com.mick.chatopapi.entity.ConversationEntity;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+public interface ConversationRepository extends JpaRepository<ConversationEntity, Integer> {
+
+    String CONVERSATION_DTO_PROJECTION = """
+            select new com.mick.chatopapi.dto.ConversationDto(
+                c.id, c.rental_id, c.sender_id, c.last_message_id, c.last_activity, c.message_count)
+            from ConversationEntity c
+            """;
+
+    @Query(CONVERSATION_DTO_PROJECTION + """
+             where c.owner_id = :ownerId
+            order by c.last_activity desc, c.id desc
+            """)
+    List<ConversationDto> findLatestByOwner(@Param("ownerId") Integer ownerId, Limit limit);
+
+    @Query(CONVERSATION_DTO_PROJECTION + """
+             where c.owner_id = :ownerId
+               and (c.last_activity < :lastActivity or (c.last_activity = :lastActivity and c.id < :id))
+            order by c.last_activity desc, c.id desc
+            """)
+    List<ConversationDto> findByOwnerBefore(@Param("ownerId") Integer ownerId,
+                                            @Param("lastActivity") LocalDateTime lastActivity,
+                                            @Param("id") Integer id,
+                                            Limit limit);
+}
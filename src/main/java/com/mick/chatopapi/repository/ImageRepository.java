@@ -0,0 +1,61 @@
+package com.mick.chatopapi.repository;
+
+import com.mick.chatopapi.dto.ImageRefCount;
+import com.mick.chatopapi.entity.ImageEntity;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+public interface ImageRepository extends JpaRepository<ImageEntity, String> {
+
+    @Transactional
+    @Modifying
+    @Query("update ImageEntity i set i.ref_count = i.ref_count + 1 where i.filename = :filename")
+    int incrementRefCount(@Param("filename") String filename);
+
+    /**
+     * Records a newly stored image with one reference, or adds the reference when another
+     * node recorded the same content first.
+     */
+    @Transactional
+    @Modifying
+    @Query(value = """
+            insert into images (filename, sha256, size, ref_count, created_at)
+            values (:filename, :sha256, :size, 1, :createdAt)
+            on duplicate key update ref_count = ref_count + 1
+            """, nativeQuery = true)
+    int insertOrIncrementRefCount(@Param("filename") String filename,
+                                  @Param("sha256") String sha256,
+                                  @Param("size") long size,
+                                  @Param("createdAt") LocalDateTime createdAt);
+
+    @Transactional
+    @Modifying
+    @Query("update ImageEntity i set i.ref_count = i.ref_count - 1 where i.filename = :filename and i.ref_count > 0")
+    int decrementRefCount(@Param("filename") String filename);
+
+    @Transactional
+    @Modifying
+    @Query("delete from ImageEntity i where i.filename = :filename and i.ref_count = 0")
+    int deleteIfUnreferenced(@Param("filename") String filename);
+
+    @Query("select i.ref_count from ImageEntity i where i.filename = :filename")
+    Optional<Integer> findRefCount(@Param("filename") String filename);
+
+    /**
+     * Reads the reference count and locks the row until the transaction ends, so that another
+     * node storing the same content waits for a release or a purge to finish.
+     */
+    @Query(value = "select ref_count from images where filename = :filename for update", nativeQuery = true)
+    Optional<Integer> findRefCountForUpdate(@Param("filename") String filename);
+
+    @Query("select new com.mick.chatopapi.dto.ImageRefCount(i.filename, i.ref_count) from ImageEntity i where i.filename in :filenames")
+    List<ImageRefCount> findRefCounts(@Param("filenames") Collection<String> filenames);
+}
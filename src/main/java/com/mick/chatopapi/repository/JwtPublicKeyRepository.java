@@ -0,0 +1,22 @@
+package com.mick.chatopapi.repository;
+
+import com.mick.chatopapi.entity.JwtPublicKeyEntity;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+public interface JwtPublicKeyRepository extends JpaRepository<JwtPublicKeyEntity, String> {
+
+    @Query("select k from JwtPublicKeyEntity k where k.expires_at > :now")
+    List<JwtPublicKeyEntity> findValid(@Param("now") LocalDateTime now);
+
+    @Transactional
+    @Modifying
+    @Query("delete from JwtPublicKeyEntity k where k.expires_at <= :now")
+    int deleteExpired(@Param("now") LocalDateTime now);
+}
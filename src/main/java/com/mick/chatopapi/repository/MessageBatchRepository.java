@@ -0,0 +1,98 @@
+package com.mick.chatopapi.repository;
+
+import com.mick.chatopapi.dto.QueuedMessage;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.stereotype.Repository;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+@Repository
+public class MessageBatchRepository {
+
+    private static final String INSERT_SQL = """
+            insert into messages (rental_id, user_id, message, created_at, updated_at)
+            values (?, ?, ?, ?, ?)
+            """;
+
+    private static final String OLDEST_IDS_SQL = """
+            select id from messages
+            where created_at < ?
+            order by created_at, id
+            limit ?
+            """;
+
+    private static final String ARCHIVE_SQL = """
+            insert into messages_archive (id, rental_id, user_id, message, created_at, updated_at)
+            select id, rental_id, user_id, message, created_at, updated_at
+            from messages where id in (%s)
+            """;
+
+    private static final String DELETE_SQL = "delete from messages where id in (%s)";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public MessageBatchRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Inserts the messages in a single batch and returns their generated ids, in message order.
+     */
+    public List<Integer> insertAll(List<QueuedMessage> messages) {
+        KeyHolder keyHolder = new GeneratedKeyHolder();
+        jdbcTemplate.batchUpdate(
+                connection -> connection.prepareStatement(INSERT_SQL, new String[]{"id"}),
+                new BatchPreparedStatementSetter() {
+                    @Override
+                    public void setValues(PreparedStatement ps, int i) throws SQLException {
+                        setMessage(ps, messages.get(i));
+                    }
+
+                    @Override
+                    public int getBatchSize() {
+                        return messages.size();
+                    }
+                },
+                keyHolder);
+        return keyHolder.getKeyList().stream()
+                .map(Map::values)
+                .map(values -> ((Number) values.iterator().next()).intValue())
+                .toList();
+    }
+
+    /**
+     * Returns the ids of the oldest messages created before the cutoff, oldest first.
+     */
+    public List<Integer> findIdsCreatedBefore(LocalDateTime cutoff, int limit) {
+        return jdbcTemplate.queryForList(OLDEST_IDS_SQL, Integer.class, Timestamp.valueOf(cutoff), limit);
+    }
+
+    /**
+     * Copies the given messages to messages_archive and deletes them from messages.
+     * Must run in a transaction so a message is never in both tables, or in neither.
+     */
+    public int moveToArchive(List<Integer> ids) {
+        String placeholders = String.join(", ", Collections.nCopies(ids.size(), "?"));
+        Object[] args = ids.toArray();
+        jdbcTemplate.update(ARCHIVE_SQL.formatted(placeholders), args);
+        return jdbcTemplate.update(DELETE_SQL.formatted(placeholders), args);
+    }
+
+    private void setMessage(PreparedStatement ps, QueuedMessage message) throws SQLException {
+        Timestamp createdAt = Timestamp.valueOf(message.createdAt());
+        ps.setInt(1, message.rentalId());
+        ps.setInt(2, message.userId());
+        ps.setString(3, message.message());
+        ps.setTimestamp(4, createdAt);
+        ps.setTimestamp(5, createdAt);
+    }
+}
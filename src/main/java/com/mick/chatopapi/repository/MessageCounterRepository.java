@@ -0,0 +1,130 @@
+package com.mick.chatopapi.repository;
+
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Repository;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+@Repository
+public class MessageCounterRepository {
+
+    public enum CounterType {
+        RENTAL,
+        OWNER
+    }
+
+    public record CounterKey(CounterType type, Integer id) {
+    }
+
+    private static final int FIND_CHUNK_SIZE = 500;
+
+    private static final String ADD_SQL = """
+            update message_counters set message_count = message_count + ?
+            where counter_type = ? and target_id = ?
+            """;
+
+    private static final String INSERT_SQL = """
+            insert into message_counters (counter_type, target_id, message_count)
+            values (?, ?, ?)
+            """;
+
+    private static final String FIND_SQL = """
+            select target_id, message_count from message_counters
+            where counter_type = ? and target_id in (%s)
+            """;
+
+    private static final String IS_EMPTY_SQL = "select count(*) from (select 1 from message_counters limit 1) c";
+
+    private static final String SEED_RENTALS_SQL = """
+            insert into message_counters (counter_type, target_id, message_count)
+            select 'RENTAL', m.rental_id, count(*) from (
+                select rental_id from messages
+                union all
+                select rental_id from messages_archive
+            ) m
+            group by m.rental_id
+            """;
+
+    private static final String SEED_OWNERS_SQL = """
+            insert into message_counters (counter_type, target_id, message_count)
+            select 'OWNER', r.owner_id, sum(c.message_count)
+            from message_counters c
+            join rentals r on r.id = c.target_id
+            where c.counter_type = 'RENTAL'
+            group by r.owner_id
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public MessageCounterRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Adds each delta to its counter, creating the counters that do not exist yet.
+     */
+    public void addAll(Map<CounterKey, Long> deltas) {
+        Map<CounterType, List<Integer>> ids = new HashMap<>();
+        deltas.keySet().forEach(key -> ids.computeIfAbsent(key.type(), type -> new ArrayList<>()).add(key.id()));
+        // Batched update counts are not reliable with rewriteBatchedStatements, so look the rows up first
+        ids.forEach((type, typeIds) -> {
+            Map<Integer, Long> existing = findCounts(type, typeIds);
+            typeIds.stream()
+                    .filter(id -> !existing.containsKey(id))
+                    .forEach(id -> createIfMissing(new CounterKey(type, id)));
+        });
+        jdbcTemplate.batchUpdate(ADD_SQL, new ArrayList<>(deltas.entrySet()), deltas.size(), (ps, entry) -> {
+            ps.setLong(1, entry.getValue());
+            ps.setString(2, entry.getKey().type().name());
+            ps.setInt(3, entry.getKey().id());
+        });
+    }
+
+    /**
+     * Returns the stored counts of the given ids; ids without a counter are left out.
+     */
+    public Map<Integer, Long> findCounts(CounterType type, Collection<Integer> ids) {
+        Map<Integer, Long> counts = new HashMap<>();
+        List<Integer> remaining = List.copyOf(ids);
+        for (int from = 0; from < remaining.size(); from += FIND_CHUNK_SIZE) {
+            List<Integer> chunk = remaining.subList(from, Math.min(from + FIND_CHUNK_SIZE, remaining.size()));
+            List<Object> args = new ArrayList<>(chunk.size() + 1);
+            args.add(type.name());
+            args.addAll(chunk);
+            String placeholders = String.join(", ", Collections.nCopies(chunk.size(), "?"));
+            jdbcTemplate.query(FIND_SQL.formatted(placeholders),
+                    (RowCallbackHandler) rs -> counts.put(rs.getInt("target_id"), rs.getLong("message_count")),
+                    args.toArray());
+        }
+        return counts;
+    }
+
+    /**
+     * Fills the counters from the messages already stored, the first time the table is used.
+     * Must run in a transaction.
+     */
+    public boolean seedIfEmpty() {
+        Integer rows = jdbcTemplate.queryForObject(IS_EMPTY_SQL, Integer.class);
+        if (rows != null && rows > 0) {
+            return false;
+        }
+        jdbcTemplate.update(SEED_RENTALS_SQL);
+        jdbcTemplate.update(SEED_OWNERS_SQL);
+        return true;
+    }
+
+    private void createIfMissing(CounterKey key) {
+        try {
+            jdbcTemplate.update(INSERT_SQL, key.type().name(), key.id(), 0L);
+        } catch (DuplicateKeyException e) {
+            // Another node created it in the meantime
+        }
+    }
+}
@@ -1,7 +1,37 @@
 package com.mick.chatopapi.repository;
 
+import com.mick.chatopapi.dto.MessageDto;
 import com.mick.chatopapi.entity.MessageEntity;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.List;
 
 public interface MessageRepository extends JpaRepository<MessageEntity, Integer> {
+
+    // Reads the foreign key columns directly so neither the user nor the rental is joined
+    String MESSAGE_DTO_PROJECTION = """
+            select new com.mick.chatopapi.dto.MessageDto(
+                m.id, m.user.id, m.message, m.created_at)
+            from MessageEntity m
+            """;
+
+    @Query(MESSAGE_DTO_PROJECTION + """
+             where m.rental.id = :rentalId
+            order by m.created_at desc, m.id desc
+            """)
+    List<MessageDto> findLatestByRental(@Param("rentalId") Integer rentalId, Limit limit);
+
+    @Query(MESSAGE_DTO_PROJECTION + """
+             where m.rental.id = :rentalId
+               and (m.created_at < :createdAt or (m.created_at = :createdAt and m.id < :id))
+            order by m.created_at desc, m.id desc
+            """)
+    List<MessageDto> findByRentalBefore(@Param("rentalId") Integer rentalId,
+                                        @Param("createdAt") LocalDateTime createdAt,
+                                        @Param("id") Integer id,
+                                        Limit limit);
 }
@@ -0,0 +1,73 @@
+package com.mick.chatopapi.repository;
+
+import com.mick.chatopapi.dto.RentalImportRow;
+import com.mick.chatopapi.image.ContentAddressedImageStore;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.stereotype.Repository;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Plain JDBC inserts for bulk imports. Rows go out as one JDBC batch, which
+ * Hibernate cannot do for entities using IDENTITY keys.
+ */
+@Repository
+public class RentalBatchRepository {
+
+    private static final String INSERT_SQL = """
+            insert into rentals (name, surface, price, description, picture, picture_filename, owner_id, created_at, updated_at)
+            values (?, ?, ?, ?, ?, ?, ?, ?, ?)
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public RentalBatchRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Inserts the rows in a single batch and returns their generated ids, in row order.
+     */
+    public List<Integer> insertAll(List<RentalImportRow> rows, Integer ownerId, LocalDateTime now) {
+        KeyHolder keyHolder = new GeneratedKeyHolder();
+        jdbcTemplate.batchUpdate(
+                connection -> connection.prepareStatement(INSERT_SQL, new String[]{"id"}),
+                new BatchPreparedStatementSetter() {
+                    @Override
+                    public void setValues(PreparedStatement ps, int i) throws SQLException {
+                        setRow(ps, rows.get(i), ownerId, now);
+                    }
+
+                    @Override
+                    public int getBatchSize() {
+                        return rows.size();
+                    }
+                },
+                keyHolder);
+        return keyHolder.getKeyList().stream()
+                .map(Map::values)
+                .map(values -> ((Number) values.iterator().next()).intValue())
+                .toList();
+    }
+
+    private void setRow(PreparedStatement ps, RentalImportRow row, Integer ownerId, LocalDateTime now) throws SQLException {
+        Timestamp timestamp = Timestamp.valueOf(now);
+        ps.setString(1, row.name());
+        ps.setDouble(2, row.surface());
+        ps.setDouble(3, row.price());
+        ps.setString(4, row.description());
+        ps.setString(5, row.picture());
+        ps.setString(6, ContentAddressedImageStore.filenameOf(row.picture()));
+        ps.setInt(7, ownerId);
+        ps.setTimestamp(8, timestamp);
+        ps.setTimestamp(9, timestamp);
+    }
+}
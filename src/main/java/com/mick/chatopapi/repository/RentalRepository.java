@@ -1,7 +1,79 @@
 package com.mick.chatopapi.repository;
 
+import com.mick.chatopapi.dto.RentalDto;
+import com.mick.chatopapi.dto.RentalsVersion;
 import com.mick.chatopapi.entity.RentalEntity;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 
-public interface RentalRepository extends JpaRepository<RentalEntity, Integer> {
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+public interface RentalRepository extends JpaRepository<RentalEntity, Integer>, JpaSpecificationExecutor<RentalEntity> {
+
+    String RENTAL_DTO_PROJECTION = """
+            select new com.mick.chatopapi.dto.RentalDto(
+                r.id, r.name, r.surface, r.price, r.description, r.picture,
+                r.owner.id, r.created_at, r.updated_at)
+            from RentalEntity r
+            """;
+
+    @Query(RENTAL_DTO_PROJECTION + " order by r.created_at asc, r.id asc")
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    Stream<RentalDto> streamAllRentalDtos();
+
+    @Query("select new com.mick.chatopapi.dto.RentalsVersion(max(r.updated_at), count(r)) from RentalEntity r")
+    RentalsVersion findRentalsVersion();
+
+    @Query(RENTAL_DTO_PROJECTION + " where r.id = :id")
+    Optional<RentalDto> findRentalDtoById(@Param("id") Integer id);
+
+    @Query(RENTAL_DTO_PROJECTION + " where r.id in :ids")
+    List<RentalDto> findRentalDtosByIds(@Param("ids") Collection<Integer> ids);
+
+    @Query("select distinct r.picture_filename from RentalEntity r where r.picture_filename in :filenames")
+    List<String> findPictureFilenamesIn(@Param("filenames") Collection<String> filenames);
+
+    @Query("select case when count(r) > 0 then true else false end from RentalEntity r where r.picture_filename = :filename")
+    boolean existsByPictureFilename(@Param("filename") String filename);
+
+    /**
+     * Rentals saved before the picture filename was stored, in id order.
+     */
+    @Query("select r from RentalEntity r where r.id > :id and r.picture_filename is null order by r.id asc")
+    List<RentalEntity> findWithoutPictureFilenameAfter(@Param("id") Integer id, Limit limit);
+
+    @Query("select r.id from RentalEntity r where r.owner.id = :ownerId")
+    List<Integer> findIdsByOwnerId(@Param("ownerId") Integer ownerId);
+
+    @Query("select r.owner.id from RentalEntity r where r.id = :id")
+    Optional<Integer> findOwnerIdById(@Param("id") Integer id);
+
+    @Query(RENTAL_DTO_PROJECTION + " order by r.created_at asc, r.id asc")
+    List<RentalDto> findFirstPage(Limit limit);
+
+    @Query(RENTAL_DTO_PROJECTION + """
+             where r.created_at > :createdAt or (r.created_at = :createdAt and r.id > :id)
+            order by r.created_at asc, r.id asc
+            """)
+    List<RentalDto> findPageAfter(@Param("createdAt") LocalDateTime createdAt,
+                                  @Param("id") Integer id,
+                                  Limit limit);
+
+    @Query(RENTAL_DTO_PROJECTION + """
+             where r.updated_at > :updatedAt or (r.updated_at = :updatedAt and r.id > :id)
+            order by r.updated_at asc, r.id asc
+            """)
+    List<RentalDto> findUpdatedAfter(@Param("updatedAt") LocalDateTime updatedAt,
+                                     @Param("id") Integer id,
+                                     Limit limit);
 }
@@ -0,0 +1,70 @@
+package com.mick.chatopapi.repository;
+
+import com.mick.chatopapi.dto.RentalSearchCriteria;
+import com.mick.chatopapi.dto.RentalSort;
+import com.mick.chatopapi.entity.RentalEntity;
+import jakarta.persistence.criteria.Order;
+import org.springframework.data.jpa.domain.Specification;
+
+/**
+ * Filters for rental searches. Every predicate compares a bare column with a
+ * bound value so that the rentals indexes stay usable.
+ */
+public final class RentalSpecifications {
+
+    private RentalSpecifications() {
+    }
+
+    public static Specification<RentalEntity> matching(RentalSearchCriteria criteria) {
+        return Specification.where(priceAtLeast(criteria.minPrice()))
+                .and(priceAtMost(criteria.maxPrice()))
+                .and(surfaceAtLeast(criteria.minSurface()))
+                .and(surfaceAtMost(criteria.maxSurface()))
+                .and(ownedBy(criteria.ownerId()))
+                .and(sortedBy(criteria.sort()));
+    }
+
+    /**
+     * Orders the results, with id as tie-breaker in the same direction. The ordering lives here rather than in
+     * a {@code Sort} because Spring Data cannot resolve the {@code created_at} property name.
+     */
+    public static Specification<RentalEntity> sortedBy(RentalSort sort) {
+        return (root, query, cb) -> {
+            if (query.getResultType() == Long.class) {
+                return null;
+            }
+            Order order = switch (sort == null ? RentalSort.NEWEST : sort) {
+                case NEWEST -> cb.desc(root.get("created_at"));
+                case OLDEST -> cb.asc(root.get("created_at"));
+                case PRICE_ASC -> cb.asc(root.get("price"));
+                case PRICE_DESC -> cb.desc(root.get("price"));
+                case SURFACE_ASC -> cb.asc(root.get("surface"));
+                case SURFACE_DESC -> cb.desc(root.get("surface"));
+            };
+            // Ties go the same way as the sort, so an index on the sort column and id can be read in one direction
+            Order tieBreaker = order.isAscending() ? cb.asc(root.get("id")) : cb.desc(root.get("id"));
+            query.orderBy(order, tieBreaker);
+            return null;
+        };
+    }
+
+    public static Specification<RentalEntity> priceAtLeast(Double min) {
+        return (root, query, cb) -> min == null ? null : cb.greaterThanOrEqualTo(root.get("price"), min);
+    }
+
+    public static Specification<RentalEntity> priceAtMost(Double max) {
+        return (root, query, cb) -> max == null ? null : cb.lessThanOrEqualTo(root.get("price"), max);
+    }
+
+    public static Specification<RentalEntity> surfaceAtLeast(Double min) {
+        return (root, query, cb) -> min == null ? null : cb.greaterThanOrEqualTo(root.get("surface"), min);
+    }
+
+    public static Specification<RentalEntity> surfaceAtMost(Double max) {
+        return (root, query, cb) -> max == null ? null : cb.lessThanOrEqualTo(root.get("surface"), max);
+    }
+
+    public static Specification<RentalEntity> ownedBy(Integer ownerId) {
+        return (root, query, cb) -> ownerId == null ? null : cb.equal(root.get("owner").get("id"), ownerId);
+    }
+}
@@ -2,9 +2,14 @@ package com.mick.chatopapi.repository;
 
 import com.mick.chatopapi.entity.UserEntity;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 import java.util.Optional;
 
 public interface UserRepository extends JpaRepository<UserEntity, Integer> {
     Optional<UserEntity> findByEmail(String email);
+
+    @Query("select u.id from UserEntity u where u.email = :email")
+    Optional<Integer> findIdByEmail(@Param("email") String email);
 }
@@ -0,0 +1,157 @@
+package com.mick.chatopapi.search;
+
+import com.mick.chatopapi.dto.RentalDto;
+import jakarta.annotation.PreDestroy;
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.queryparser.simple.SimpleQueryParser;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.SearcherManager;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.search.TopScoreDocCollectorManager;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * Inverted index over rental names and descriptions, stored on local disk.
+ * Only rental ids are stored; callers load the rentals themselves.
+ * Writes are serialized, so a rental indexed during a rebuild is applied after it and never lost or duplicated.
+ */
+@Component
+public class RentalSearchIndex {
+
+    private static final String ID_FIELD = "id";
+    private static final String NAME_FIELD = "name";
+    private static final String DESCRIPTION_FIELD = "description";
+
+    private final Directory directory;
+    private final Analyzer analyzer;
+    private final IndexWriter indexWriter;
+    private final SearcherManager searcherManager;
+    private final ReentrantLock writeLock = new ReentrantLock();
+
+    public RentalSearchIndex(@Value("${chatop.search.index-dir}") String indexDir) throws IOException {
+        this.directory = FSDirectory.open(Paths.get(indexDir));
+        this.analyzer = new StandardAnalyzer();
+        this.indexWriter = new IndexWriter(directory, new IndexWriterConfig(analyzer)
+                .setOpenMode(IndexWriterConfig.OpenMode.CREATE_OR_APPEND));
+        this.searcherManager = new SearcherManager(indexWriter, null);
+    }
+
+    public void index(RentalDto rental) {
+        indexAll(List.of(rental));
+    }
+
+    public void indexAll(List<RentalDto> rentals) {
+        writeLock.lock();
+        try {
+            for (RentalDto rental : rentals) {
+                indexWriter.updateDocument(new Term(ID_FIELD, rental.id().toString()), toDocument(rental));
+            }
+            indexWriter.commit();
+            searcherManager.maybeRefresh();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to index rentals", e);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Replaces the whole index with the rentals pushed by the given source.
+     */
+    public long rebuild(Consumer<Consumer<RentalDto>> source) {
+        writeLock.lock();
+        try {
+            indexWriter.deleteAll();
+            long[] count = {0};
+            source.accept(rental -> {
+                try {
+                    indexWriter.addDocument(toDocument(rental));
+                    count[0]++;
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            indexWriter.commit();
+            searcherManager.maybeRefresh();
+            return count[0];
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to rebuild the rental search index", e);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    public SearchHits search(String text, int offset, int limit) {
+        SimpleQueryParser parser = new SimpleQueryParser(analyzer,
+                Map.of(NAME_FIELD, 2.0f, DESCRIPTION_FIELD, 1.0f));
+        parser.setDefaultOperator(BooleanClause.Occur.MUST);
+        Query query = parser.parse(text);
+        if (query == null) {
+            return new SearchHits(List.of(), 0);
+        }
+
+        try {
+            IndexSearcher searcher = searcherManager.acquire();
+            try {
+                // The hit queue is allocated up front, so never ask for more hits than there are documents
+                int numHits = (int) Math.max(1, Math.min((long) offset + limit, searcher.getIndexReader().maxDoc()));
+                TopDocs topDocs = searcher.search(query, new TopScoreDocCollectorManager(numHits, Integer.MAX_VALUE));
+                List<Integer> ids = new ArrayList<>();
+                ScoreDoc[] scoreDocs = topDocs.scoreDocs;
+                for (int i = offset; i < scoreDocs.length; i++) {
+                    String id = searcher.storedFields().document(scoreDocs[i].doc).get(ID_FIELD);
+                    ids.add(Integer.valueOf(id));
+                }
+                return new SearchHits(ids, topDocs.totalHits.value);
+            } finally {
+                searcherManager.release(searcher);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to search rentals", e);
+        }
+    }
+
+    @PreDestroy
+    public void close() throws IOException {
+        searcherManager.close();
+        indexWriter.close();
+        directory.close();
+    }
+
+    private Document toDocument(RentalDto rental) {
+        Document document = new Document();
+        document.add(new StringField(ID_FIELD, rental.id().toString(), Field.Store.YES));
+        document.add(new TextField(NAME_FIELD, rental.name(), Field.Store.NO));
+        document.add(new TextField(DESCRIPTION_FIELD, rental.description(), Field.Store.NO));
+        return document;
+    }
+
+    /**
+     * Ids of one page of matching rentals, best match first, with the total number of matches.
+     */
+    public record SearchHits(List<Integer> ids, long totalHits) {
+    }
+}
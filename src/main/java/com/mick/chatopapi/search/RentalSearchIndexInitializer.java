@@ -0,0 +1,104 @@
+package com.mick.chatopapi.search;
+
+import com.mick.chatopapi.dto.RentalDto;
+import com.mick.chatopapi.repository.RentalRepository;
+import com.mick.chatopapi.service.RentalService;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps this node's search index in line with the database. The index lives on local disk and
+ * only sees the writes made through this node, so it is rebuilt on every startup, then caught up
+ * periodically with the rentals any node has written since, going by their update time.
+ */
+@Component
+public class RentalSearchIndexInitializer {
+
+    private static final Logger logger = LoggerFactory.getLogger(RentalSearchIndexInitializer.class);
+    // Each pass reads this far back again, for writes committed after a later one or stamped by a node running behind
+    private static final Duration CATCH_UP_OVERLAP = Duration.ofMinutes(1);
+    private static final Limit CATCH_UP_BATCH = Limit.of(500);
+
+    private final RentalSearchIndex rentalSearchIndex;
+    private final RentalService rentalService;
+    private final RentalRepository rentalRepository;
+    private ScheduledExecutorService scheduler;
+    private LocalDateTime caughtUpTo;
+
+    @Value("${chatop.search.catch-up-interval:30s}")
+    private Duration catchUpInterval;
+
+    public RentalSearchIndexInitializer(RentalSearchIndex rentalSearchIndex, RentalService rentalService,
+                                        RentalRepository rentalRepository) {
+        this.rentalSearchIndex = rentalSearchIndex;
+        this.rentalService = rentalService;
+        this.rentalRepository = rentalRepository;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuildIndex() {
+        // Anything written once the rebuild has started is left to the first catch-up
+        caughtUpTo = LocalDateTime.now();
+        long start = System.currentTimeMillis();
+        long indexed = rentalSearchIndex.rebuild(rentalService::streamAllRentals);
+        logger.info("Rental search index rebuilt with {} rentals in {} ms", indexed, System.currentTimeMillis() - start);
+
+        scheduler = Executors.newSingleThreadScheduledExecutor(
+                Thread.ofPlatform().name("rental-search-catch-up").daemon(true).factory());
+        long intervalMillis = catchUpInterval.toMillis();
+        scheduler.scheduleWithFixedDelay(this::catchUpSafely, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    /**
+     * Indexes the rentals updated since the previous pass, one batch at a time, and returns how many were indexed.
+     */
+    long catchUp() {
+        LocalDateTime updatedAt = caughtUpTo.minus(CATCH_UP_OVERLAP);
+        Integer id = 0;
+        long indexed = 0;
+        List<RentalDto> batch;
+        do {
+            batch = rentalRepository.findUpdatedAfter(updatedAt, id, CATCH_UP_BATCH);
+            if (batch.isEmpty()) {
+                break;
+            }
+            rentalSearchIndex.indexAll(batch);
+            RentalDto last = batch.get(batch.size() - 1);
+            updatedAt = last.updatedAt();
+            id = last.id();
+            indexed += batch.size();
+        } while (batch.size() == CATCH_UP_BATCH.max());
+        if (updatedAt.isAfter(caughtUpTo)) {
+            caughtUpTo = updatedAt;
+        }
+        return indexed;
+    }
+
+    private void catchUpSafely() {
+        try {
+            catchUp();
+        } catch (RuntimeException e) {
+            logger.error("Rental search index catch-up failed", e);
+        }
+    }
+}
@@ -1,31 +1,40 @@
 package com.mick.chatopapi.security;
 
+import com.nimbusds.jose.jwk.JWK;
 import org.springframework.security.core.Authentication;
-import org.springframework.security.oauth2.jose.jws.MacAlgorithm;
+import org.springframework.security.oauth2.jose.jws.SignatureAlgorithm;
 import org.springframework.security.oauth2.jwt.JwsHeader;
 import org.springframework.security.oauth2.jwt.JwtClaimsSet;
 import org.springframework.security.oauth2.jwt.JwtEncoder;
 import org.springframework.security.oauth2.jwt.JwtEncoderParameters;
 import org.springframework.stereotype.Service;
 
+import java.time.Duration;
 import java.time.Instant;
-import java.time.temporal.ChronoUnit;
 
 @Service
 public class JwtService {
+    public static final Duration TOKEN_LIFETIME = Duration.ofDays(1);
+
     private final JwtEncoder jwtEncoder;
+    private final JwtSigningKeys jwtSigningKeys;
 
-    public JwtService(JwtEncoder jwtEncoder) {
+    public JwtService(JwtEncoder jwtEncoder, JwtSigningKeys jwtSigningKeys) {
         this.jwtEncoder = jwtEncoder;
+        this.jwtSigningKeys = jwtSigningKeys;
     }
 
     public String generateToken(Authentication authentication) {
+        JWK signingKey = jwtSigningKeys.signingKey();
+        JwsHeader header = JwsHeader.with(SignatureAlgorithm.from(signingKey.getAlgorithm().getName()))
+                .keyId(signingKey.getKeyID())
+                .build();
         JwtClaimsSet claims = JwtClaimsSet.builder()
                 .issuer("self")
                 .issuedAt(Instant.now())
-                .expiresAt(Instant.now().plus(1, ChronoUnit.DAYS))
+                .expiresAt(Instant.now().plus(TOKEN_LIFETIME))
                 .subject(authentication.getName())
                 .build();
-        return this.jwtEncoder.encode(JwtEncoderParameters.from(claims)).getTokenValue();
+        return this.jwtEncoder.encode(JwtEncoderParameters.from(header, claims)).getTokenValue();
     }
 }
@@ -0,0 +1,225 @@
+package com.mick.chatopapi.security;
+
+import com.mick.chatopapi.configuration.JwtSigningProperties;
+import com.mick.chatopapi.configuration.JwtSigningProperties.SigningAlgorithm;
+import com.mick.chatopapi.entity.JwtPublicKeyEntity;
+import com.mick.chatopapi.repository.JwtPublicKeyRepository;
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.jwk.Curve;
+import com.nimbusds.jose.jwk.ECKey;
+import com.nimbusds.jose.jwk.JWK;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.KeyUse;
+import com.nimbusds.jose.jwk.RSAKey;
+import com.nimbusds.jose.jwk.gen.ECKeyGenerator;
+import com.nimbusds.jose.jwk.source.JWKSource;
+import com.nimbusds.jose.proc.SecurityContext;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Component;
+
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.interfaces.RSAPrivateKey;
+import java.security.interfaces.RSAPublicKey;
+import java.text.ParseException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keys used to sign and verify JWTs, each identified by its kid.
+ * With ES256 every node signs with its own P-256 key, replaced every rotation interval. Only its
+ * public half is written to jwt_public_keys, where it stays valid for the retention period after
+ * the node stops signing with it, so tokens signed before a rotation or on another node still verify.
+ * The keystore RSA key is always accepted, including for tokens issued before keys had a kid.
+ */
+@Component
+public class JwtSigningKeys {
+
+    public static final Set<JWSAlgorithm> ALGORITHMS = Set.of(JWSAlgorithm.RS256, JWSAlgorithm.ES256);
+
+    private static final Logger logger = LoggerFactory.getLogger(JwtSigningKeys.class);
+    // Caps the reloads a flood of tokens with unknown kids can cause
+    private static final long MIN_RELOAD_GAP_NANOS = Duration.ofSeconds(1).toNanos();
+
+    private final JwtSigningProperties properties;
+    private final JwtPublicKeyRepository jwtPublicKeyRepository;
+    private final RSAKey rsaKey;
+    private volatile JWK signingKey;
+    // The current key and the one it replaced, so a token being signed across a rotation still finds its key
+    private volatile JWKSet localKeys;
+    private volatile JWKSet verificationKeys;
+    private long lastReload;
+    private ScheduledExecutorService scheduler;
+
+    public JwtSigningKeys(JwtSigningProperties properties,
+                          JwtPublicKeyRepository jwtPublicKeyRepository,
+                          PrivateKey privateKey,
+                          PublicKey publicKey) {
+        if (properties.getRetention().compareTo(JwtService.TOKEN_LIFETIME) < 0) {
+            throw new IllegalStateException("JWT key retention must be at least the token lifetime: " + JwtService.TOKEN_LIFETIME);
+        }
+        this.properties = properties;
+        this.jwtPublicKeyRepository = jwtPublicKeyRepository;
+        try {
+            this.rsaKey = new RSAKey.Builder((RSAPublicKey) publicKey)
+                    .privateKey((RSAPrivateKey) privateKey)
+                    .keyUse(KeyUse.SIGNATURE)
+                    .algorithm(JWSAlgorithm.RS256)
+                    .keyIDFromThumbprint()
+                    .build();
+        } catch (JOSEException e) {
+            throw new IllegalStateException("Unable to compute the keystore key id", e);
+        }
+        this.signingKey = rsaKey;
+        this.localKeys = new JWKSet(rsaKey);
+        this.verificationKeys = new JWKSet(rsaKey.toPublicJWK());
+        this.lastReload = System.nanoTime() - MIN_RELOAD_GAP_NANOS;
+    }
+
+    @PostConstruct
+    public void start() {
+        scheduler = Executors.newSingleThreadScheduledExecutor(
+                Thread.ofPlatform().name("jwt-signing-keys").daemon(true).factory());
+        if (properties.getAlgorithm() == SigningAlgorithm.ES256) {
+            rotate();
+            long rotationMillis = properties.getRotationInterval().toMillis();
+            scheduler.scheduleWithFixedDelay(this::rotateSafely, rotationMillis, rotationMillis, TimeUnit.MILLISECONDS);
+        } else {
+            refresh();
+        }
+        long refreshMillis = properties.getRefreshInterval().toMillis();
+        scheduler.scheduleWithFixedDelay(this::refreshSafely, refreshMillis, refreshMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    /**
+     * The key new tokens are signed with; its kid and algorithm go in the token header.
+     */
+    public JWK signingKey() {
+        return signingKey;
+    }
+
+    /**
+     * Source of the private keys for the encoder, selected by the kid of the header.
+     */
+    public JWKSource<SecurityContext> signingKeySource() {
+        return (selector, context) -> selector.select(localKeys);
+    }
+
+    /**
+     * Source of the public keys for the decoder. A kid that is not known yet is most likely
+     * a key another node just rotated to, so the keys are reloaded before giving up on it.
+     */
+    public JWKSource<SecurityContext> verificationKeySource() {
+        return (selector, context) -> {
+            List<JWK> keys = selector.select(verificationKeys);
+            if (keys.isEmpty() && reloadAllowed()) {
+                refresh();
+                keys = selector.select(verificationKeys);
+            }
+            return keys;
+        };
+    }
+
+    /**
+     * Every key a token can currently be verified with, without their private parts.
+     */
+    public JWKSet publicKeys() {
+        return verificationKeys;
+    }
+
+    /**
+     * Publishes a new ES256 key, then starts signing with it.
+     */
+    void rotate() {
+        ECKey key = generateKey();
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime expiresAt = now.plus(properties.getRotationInterval()).plus(properties.getRetention());
+        // Saved before first use, so no node sees a token signed with a key it cannot find
+        jwtPublicKeyRepository.save(new JwtPublicKeyEntity(
+                key.getKeyID(), JWSAlgorithm.ES256.getName(), key.toPublicJWK().toJSONString(), now, expiresAt));
+
+        List<JWK> keys = new ArrayList<>(2);
+        keys.add(key);
+        if (signingKey instanceof ECKey previous) {
+            keys.add(previous);
+        }
+        localKeys = new JWKSet(keys);
+        refresh();
+        signingKey = key;
+        logger.info("JWT signing key rotated to {}", key.getKeyID());
+    }
+
+    /**
+     * Reloads the public keys of every node and drops the ones past their retention.
+     */
+    void refresh() {
+        LocalDateTime now = LocalDateTime.now();
+        List<JWK> keys = new ArrayList<>();
+        keys.add(rsaKey.toPublicJWK());
+        for (JwtPublicKeyEntity entity : jwtPublicKeyRepository.findValid(now)) {
+            try {
+                keys.add(JWK.parse(entity.getJwk()));
+            } catch (ParseException e) {
+                logger.warn("Ignoring unreadable JWT public key {}: {}", entity.getKid(), e.getMessage());
+            }
+        }
+        verificationKeys = new JWKSet(keys);
+        synchronized (this) {
+            lastReload = System.nanoTime();
+        }
+        jwtPublicKeyRepository.deleteExpired(now);
+    }
+
+    private synchronized boolean reloadAllowed() {
+        return System.nanoTime() - lastReload >= MIN_RELOAD_GAP_NANOS;
+    }
+
+    private void rotateSafely() {
+        try {
+            rotate();
+        } catch (DataAccessException e) {
+            // The current key keeps signing until the next rotation succeeds
+            logger.warn("Unable to rotate the JWT signing key, will retry: {}", e.getMessage());
+        } catch (RuntimeException e) {
+            logger.error("Unable to rotate the JWT signing key", e);
+        }
+    }
+
+    private void refreshSafely() {
+        try {
+            refresh();
+        } catch (RuntimeException e) {
+            logger.warn("Unable to refresh the JWT public keys, will retry: {}", e.getMessage());
+        }
+    }
+
+    private static ECKey generateKey() {
+        try {
+            return new ECKeyGenerator(Curve.P_256)
+                    .keyUse(KeyUse.SIGNATURE)
+                    .algorithm(JWSAlgorithm.ES256)
+                    .keyIDFromThumbprint(true)
+                    .generate();
+        } catch (JOSEException e) {
+            throw new IllegalStateException("Unable to generate a JWT signing key", e);
+        }
+    }
+}
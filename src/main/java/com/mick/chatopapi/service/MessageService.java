@@ -1,8 +1,20 @@
 package com.mick.chatopapi.service;
 
+import com.mick.chatopapi.dto.InboxPageResponse;
+import com.mick.chatopapi.dto.MessageCountsResponse;
 import com.mick.chatopapi.dto.MessageRequestDto;
+import com.mick.chatopapi.dto.MessagesPageResponse;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 public interface MessageService {
 
     void createMessage(MessageRequestDto messageRequestDto);
+
+    MessagesPageResponse getRentalMessages(Integer rentalId, Integer limit, String after);
+
+    SseEmitter subscribeToOwnerMessages(String ownerEmail);
+
+    MessageCountsResponse getOwnerMessageCounts(String ownerEmail);
+
+    InboxPageResponse getOwnerInbox(String ownerEmail, Integer limit, String after);
 }
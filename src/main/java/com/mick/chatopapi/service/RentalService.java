@@ -2,13 +2,25 @@ package com.mick.chatopapi.service;
 
 import com.mick.chatopapi.dto.NewRentalDto;
 import com.mick.chatopapi.dto.RentalDto;
+import com.mick.chatopapi.dto.RentalImportResponse;
+import com.mick.chatopapi.dto.RentalSearchCriteria;
+import com.mick.chatopapi.dto.RentalsPageResponse;
+import com.mick.chatopapi.dto.RentalsSearchResponse;
 import com.mick.chatopapi.dto.UpdateRentalDto;
 
-import java.util.List;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.function.Consumer;
 
 public interface RentalService {
-    List<RentalDto> getAllRentals();
+    void streamAllRentals(Consumer<RentalDto> consumer);
+    RentalsPageResponse getRentalsPage(Integer limit, String after);
+    RentalsSearchResponse searchRentals(RentalSearchCriteria criteria, Integer page, Integer limit);
+    RentalsSearchResponse fullTextSearch(String text, Integer page, Integer limit);
     RentalDto getRentalById(Integer id);
+    String getRentalsVersion();
     void createRental(NewRentalDto rentalDto);
     void updateRental(Integer id, UpdateRentalDto updateRentalDto);
+    void updateRentalPicture(Integer id, InputStream picture, long contentLength) throws IOException;
+    RentalImportResponse importRentals(InputStream body, boolean csv) throws IOException;
 }
@@ -0,0 +1,35 @@
+package com.mick.chatopapi.service.impl;
+
+import com.mick.chatopapi.repository.ConversationBatchRepository;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Builds the conversations of the messages stored before the table existed.
+ * Runs before the application accepts requests, so no new message can make the table look used.
+ */
+@Component
+public class ConversationSeeder {
+
+    private static final Logger logger = LoggerFactory.getLogger(ConversationSeeder.class);
+
+    private final ConversationBatchRepository conversationBatchRepository;
+    private final TransactionTemplate transactionTemplate;
+
+    public ConversationSeeder(ConversationBatchRepository conversationBatchRepository,
+                              PlatformTransactionManager transactionManager) {
+        this.conversationBatchRepository = conversationBatchRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    @PostConstruct
+    public void seed() {
+        if (Boolean.TRUE.equals(transactionTemplate.execute(status -> conversationBatchRepository.seedIfEmpty()))) {
+            logger.info("Conversations seeded from the stored messages");
+        }
+    }
+}
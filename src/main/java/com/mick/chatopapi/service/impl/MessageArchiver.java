@@ -0,0 +1,120 @@
+package com.mick.chatopapi.service.impl;
+
+import com.mick.chatopapi.configuration.MessageArchiveProperties;
+import com.mick.chatopapi.repository.MessageBatchRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Moves messages older than the archive age from messages to messages_archive, oldest first
+ * and one chunk per transaction, so the hot table only holds recent messages.
+ * Because the oldest messages always go first, every archived message is older than every
+ * message still in the hot table, and a history read only needs the archive once it has
+ * gone through all of a rental's hot messages.
+ */
+@Component
+public class MessageArchiver {
+
+    private static final Logger logger = LoggerFactory.getLogger(MessageArchiver.class);
+
+    private final MessageArchiveProperties properties;
+    private final MessageBatchRepository messageBatchRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final Counter movedRows;
+    private final Timer runTime;
+    private ScheduledExecutorService scheduler;
+
+    public MessageArchiver(MessageArchiveProperties properties,
+                           MessageBatchRepository messageBatchRepository,
+                           PlatformTransactionManager transactionManager,
+                           MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.messageBatchRepository = messageBatchRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.movedRows = Counter.builder("chatop.messages.archive.moved")
+                .description("Messages moved to the archive table")
+                .register(meterRegistry);
+        this.runTime = Timer.builder("chatop.messages.archive.run")
+                .description("Time spent per archive run")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(
+                Thread.ofPlatform().name("message-archiver").daemon(true).factory());
+        long intervalMillis = properties.getInterval().toMillis();
+        scheduler.scheduleWithFixedDelay(this::archiveSafely, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    /**
+     * Runs one archive pass and returns the number of messages moved. Stops early when interrupted.
+     */
+    public long archive() {
+        LocalDateTime cutoff = LocalDateTime.now().minus(properties.getAge());
+        Timer.Sample sample = Timer.start();
+        long moved = 0;
+        try {
+            while (true) {
+                List<Integer> ids = messageBatchRepository.findIdsCreatedBefore(cutoff, properties.getChunkSize());
+                if (ids.isEmpty()) {
+                    break;
+                }
+                Integer chunk = transactionTemplate.execute(status -> messageBatchRepository.moveToArchive(ids));
+                moved += chunk;
+                movedRows.increment(chunk);
+                if (ids.size() < properties.getChunkSize() || !pause()) {
+                    break;
+                }
+            }
+        } finally {
+            sample.stop(runTime);
+        }
+        return moved;
+    }
+
+    private void archiveSafely() {
+        try {
+            long moved = archive();
+            if (moved > 0) {
+                logger.info("Archived {} messages", moved);
+            }
+        } catch (RuntimeException e) {
+            logger.error("Message archiving failed, it will resume on the next run", e);
+        }
+    }
+
+    private boolean pause() {
+        try {
+            Thread.sleep(properties.getChunkPause());
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
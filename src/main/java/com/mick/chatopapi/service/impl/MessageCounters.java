@@ -0,0 +1,222 @@
+package com.mick.chatopapi.service.impl;
+
+import com.mick.chatopapi.configuration.MessageCounterProperties;
+import com.mick.chatopapi.repository.MessageCounterRepository;
+import com.mick.chatopapi.repository.MessageCounterRepository.CounterKey;
+import com.mick.chatopapi.repository.MessageCounterRepository.CounterType;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Per-rental and per-owner message counts, kept in memory and added to message_counters in batches.
+ * Creating a message only bumps a LongAdder, so concurrent messages never contend on a lock or a row.
+ * A count read on this node always includes every message created on this node, flushed or not;
+ * messages created on other nodes show up once the count is refreshed from the table.
+ */
+@Component
+public class MessageCounters {
+
+    private static final Logger logger = LoggerFactory.getLogger(MessageCounters.class);
+
+    private final MessageCounterProperties properties;
+    private final MessageCounterRepository messageCounterRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final Map<CounterKey, Tally> tallies = new ConcurrentHashMap<>();
+    // Evicted tallies are flushed once more in case an increment raced with the eviction
+    private final List<Tally> evicted = new ArrayList<>();
+    private ScheduledExecutorService flusher;
+
+    public MessageCounters(MessageCounterProperties properties,
+                           MessageCounterRepository messageCounterRepository,
+                           PlatformTransactionManager transactionManager) {
+        this.properties = properties;
+        this.messageCounterRepository = messageCounterRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    @PostConstruct
+    public void start() {
+        if (Boolean.TRUE.equals(transactionTemplate.execute(status -> messageCounterRepository.seedIfEmpty()))) {
+            logger.info("Message counters seeded from the stored messages");
+        }
+        flusher = Executors.newSingleThreadScheduledExecutor(
+                Thread.ofPlatform().name("message-counters-flusher").daemon(true).factory());
+        long intervalMillis = properties.getFlushInterval().toMillis();
+        flusher.scheduleWithFixedDelay(this::flushSafely, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        if (flusher == null) {
+            return;
+        }
+        flusher.shutdown();
+        if (!flusher.awaitTermination(10, TimeUnit.SECONDS)) {
+            flusher.shutdownNow();
+        }
+        flushSafely();
+    }
+
+    public void increment(Integer rentalId, Integer ownerId) {
+        tally(new CounterKey(CounterType.RENTAL, rentalId)).increment();
+        tally(new CounterKey(CounterType.OWNER, ownerId)).increment();
+    }
+
+    public long ownerCount(Integer ownerId) {
+        return counts(CounterType.OWNER, List.of(ownerId)).get(ownerId);
+    }
+
+    /**
+     * Returns the count of every given id; counters not in memory yet are loaded in one query.
+     */
+    public Map<Integer, Long> counts(CounterType type, Collection<Integer> ids) {
+        Map<Integer, Tally> requested = new HashMap<>();
+        List<Integer> unloaded = new ArrayList<>();
+        for (Integer id : ids) {
+            Tally tally = tally(new CounterKey(type, id));
+            tally.touched = true;
+            requested.put(id, tally);
+            if (tally.snapshot.get() == null) {
+                unloaded.add(id);
+            }
+        }
+        if (!unloaded.isEmpty()) {
+            Map<Integer, Long> stored = messageCounterRepository.findCounts(type, unloaded);
+            long now = System.nanoTime();
+            for (Integer id : unloaded) {
+                // Loses to a flush that got there first, whose snapshot is at least as recent
+                requested.get(id).snapshot.compareAndSet(null, new Snapshot(stored.getOrDefault(id, 0L), 0, now));
+            }
+        }
+        Map<Integer, Long> counts = new HashMap<>();
+        requested.forEach((id, tally) -> counts.put(id, tally.count()));
+        return counts;
+    }
+
+    /**
+     * Adds the increments made since the last flush to the table and refreshes the counts that
+     * are in use. Only ever called from the flusher thread, or after it has stopped.
+     */
+    void flush() {
+        long staleBefore = System.nanoTime() - properties.getRefreshInterval().toNanos();
+        Map<CounterKey, Long> deltas = new HashMap<>();
+        Map<Tally, Long> sums = new HashMap<>();
+        List<Tally> stale = new ArrayList<>();
+        List<Tally> candidates = new ArrayList<>(tallies.values());
+        candidates.addAll(evicted);
+        for (Tally tally : candidates) {
+            Snapshot snapshot = tally.snapshot.get();
+            long sum = tally.local.sum();
+            long delta = sum - (snapshot == null ? 0 : snapshot.flushed());
+            if (delta > 0) {
+                deltas.merge(tally.key, delta, Long::sum);
+                sums.put(tally, sum);
+            } else if (tally.touched && snapshot != null && snapshot.loadedAt() < staleBefore) {
+                stale.add(tally);
+            }
+        }
+        evicted.clear();
+        if (!deltas.isEmpty() || !stale.isEmpty()) {
+            write(deltas, sums, stale);
+        }
+        evictIdle();
+    }
+
+    private void write(Map<CounterKey, Long> deltas, Map<Tally, Long> sums, List<Tally> stale) {
+        Map<CounterType, List<Integer>> ids = new HashMap<>();
+        sums.keySet().forEach(tally -> ids.computeIfAbsent(tally.key.type(), type -> new ArrayList<>()).add(tally.key.id()));
+        stale.forEach(tally -> ids.computeIfAbsent(tally.key.type(), type -> new ArrayList<>()).add(tally.key.id()));
+
+        Map<CounterType, Map<Integer, Long>> stored = transactionTemplate.execute(status -> {
+            if (!deltas.isEmpty()) {
+                messageCounterRepository.addAll(deltas);
+            }
+            Map<CounterType, Map<Integer, Long>> counts = new HashMap<>();
+            ids.forEach((type, typeIds) -> counts.put(type, messageCounterRepository.findCounts(type, typeIds)));
+            return counts;
+        });
+
+        long now = System.nanoTime();
+        sums.forEach((tally, sum) -> tally.snapshot.set(
+                new Snapshot(stored.get(tally.key.type()).getOrDefault(tally.key.id(), 0L), sum, now)));
+        for (Tally tally : stale) {
+            Snapshot snapshot = tally.snapshot.get();
+            long count = stored.get(tally.key.type()).getOrDefault(tally.key.id(), 0L);
+            tally.snapshot.compareAndSet(snapshot, new Snapshot(count, snapshot.flushed(), now));
+        }
+    }
+
+    private void evictIdle() {
+        boolean overCapacity = tallies.size() > properties.getMaxIdleEntries();
+        for (Tally tally : tallies.values()) {
+            Snapshot snapshot = tally.snapshot.get();
+            boolean clean = tally.local.sum() == (snapshot == null ? 0 : snapshot.flushed());
+            if (overCapacity && !tally.touched && clean && tallies.remove(tally.key, tally)) {
+                evicted.add(tally);
+            }
+            tally.touched = false;
+        }
+    }
+
+    private void flushSafely() {
+        try {
+            flush();
+        } catch (DataAccessException e) {
+            // Nothing is lost: the increments stay in memory until a flush succeeds
+            logger.warn("Unable to flush message counters, will retry: {}", e.getMessage());
+        } catch (RuntimeException e) {
+            logger.error("Unable to flush message counters", e);
+        }
+    }
+
+    private Tally tally(CounterKey key) {
+        return tallies.computeIfAbsent(key, Tally::new);
+    }
+
+    /**
+     * The stored count, read after adding the first {@code flushed} local increments to it.
+     */
+    private record Snapshot(long stored, long flushed, long loadedAt) {
+    }
+
+    private static final class Tally {
+
+        private final CounterKey key;
+        // Every increment ever made on this node; never reset, so a flush cannot lose one
+        private final LongAdder local = new LongAdder();
+        private final AtomicReference<Snapshot> snapshot = new AtomicReference<>();
+        private volatile boolean touched = true;
+
+        private Tally(CounterKey key) {
+            this.key = key;
+        }
+
+        private void increment() {
+            local.increment();
+            touched = true;
+        }
+
+        private long count() {
+            Snapshot current = snapshot.get();
+            return current.stored() + local.sum() - current.flushed();
+        }
+    }
+}
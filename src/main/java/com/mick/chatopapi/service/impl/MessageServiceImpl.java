@@ -1,17 +1,42 @@
 package com.mick.chatopapi.service.impl;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.mick.chatopapi.dto.ConversationDto;
+import com.mick.chatopapi.dto.InboxPageResponse;
+import com.mick.chatopapi.dto.MessageCountsResponse;
+import com.mick.chatopapi.dto.MessageDto;
+import com.mick.chatopapi.dto.MessageEvent;
 import com.mick.chatopapi.dto.MessageRequestDto;
+import com.mick.chatopapi.dto.MessagesPageResponse;
+import com.mick.chatopapi.dto.QueuedMessage;
 import com.mick.chatopapi.entity.MessageEntity;
 import com.mick.chatopapi.entity.RentalEntity;
 import com.mick.chatopapi.entity.UserEntity;
 import com.mick.chatopapi.mapper.MessageMapper;
+import com.mick.chatopapi.pagination.KeysetCursor;
+import com.mick.chatopapi.push.MessagePushHub;
+import com.mick.chatopapi.repository.ArchivedMessageRepository;
+import com.mick.chatopapi.repository.ConversationBatchRepository;
+import com.mick.chatopapi.repository.ConversationRepository;
+import com.mick.chatopapi.repository.MessageCounterRepository.CounterType;
 import com.mick.chatopapi.repository.MessageRepository;
 import com.mick.chatopapi.repository.RentalRepository;
 import com.mick.chatopapi.repository.UserRepository;
 import com.mick.chatopapi.service.MessageService;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.function.Predicate;
 
 @Service
 public class MessageServiceImpl implements MessageService {
@@ -20,28 +45,198 @@ public class MessageServiceImpl implements MessageService {
     private final MessageMapper messageMapper;
     private final UserRepository userRepository;
     private final RentalRepository rentalRepository;
+    private final MessageWriteBehindQueue messageWriteBehindQueue;
+    private final MessagePushHub messagePushHub;
+    private final ArchivedMessageRepository archivedMessageRepository;
+    private final MessageCounters messageCounters;
+    private final ConversationRepository conversationRepository;
+    private final ConversationBatchRepository conversationBatchRepository;
 
-    public MessageServiceImpl(MessageRepository messageRepository, MessageMapper messageMapper, UserRepository userRepository, RentalRepository rentalRepository) {
+    // Users and rentals are never deleted, so an id seen once stays valid
+    private final Cache<Integer, Boolean> knownUserIds = Caffeine.newBuilder().maximumSize(10_000).build();
+    private final Cache<Integer, Boolean> knownRentalIds = Caffeine.newBuilder().maximumSize(10_000).build();
+    // The owner of a rental never changes either
+    private final Cache<Integer, Integer> rentalOwnerIds = Caffeine.newBuilder().maximumSize(10_000).build();
+
+    @Value("${chatop.messages.page.default-size:20}")
+    private int defaultPageSize;
+
+    @Value("${chatop.messages.page.max-size:100}")
+    private int maxPageSize;
+
+    public MessageServiceImpl(MessageRepository messageRepository, MessageMapper messageMapper, UserRepository userRepository, RentalRepository rentalRepository, MessageWriteBehindQueue messageWriteBehindQueue, MessagePushHub messagePushHub, ArchivedMessageRepository archivedMessageRepository, MessageCounters messageCounters, ConversationRepository conversationRepository, ConversationBatchRepository conversationBatchRepository) {
         this.messageRepository = messageRepository;
         this.messageMapper = messageMapper;
         this.userRepository = userRepository;
         this.rentalRepository = rentalRepository;
+        this.messageWriteBehindQueue = messageWriteBehindQueue;
+        this.messagePushHub = messagePushHub;
+        this.archivedMessageRepository = archivedMessageRepository;
+        this.messageCounters = messageCounters;
+        this.conversationRepository = conversationRepository;
+        this.conversationBatchRepository = conversationBatchRepository;
     }
 
 
     @Override
+    @Transactional
     public void createMessage(MessageRequestDto messageRequestDto) {
-        UserEntity user = userRepository.findById(messageRequestDto.userId()).orElseThrow(
-                () -> new RuntimeException("User not found")
-        );
+        if (!exists(knownUserIds, messageRequestDto.userId(), userRepository::existsById)) {
+            throw new RuntimeException("User not found");
+        }
+        if (!exists(knownRentalIds, messageRequestDto.rentalId(), rentalRepository::existsById)) {
+            throw new RuntimeException("Rental not found");
+        }
 
-        RentalEntity rental = rentalRepository.findById(messageRequestDto.rentalId()).orElseThrow(
-                () -> new RuntimeException("Rental not found")
-        );
+        LocalDateTime now = LocalDateTime.now();
+        if (messageWriteBehindQueue.isEnabled()) {
+            messageWriteBehindQueue.enqueue(new QueuedMessage(
+                    messageRequestDto.rentalId(), messageRequestDto.userId(), messageRequestDto.message(), now));
+            onMessageCreated(null, messageRequestDto, now);
+            return;
+        }
 
+        UserEntity user = userRepository.getReferenceById(messageRequestDto.userId());
+        RentalEntity rental = rentalRepository.getReferenceById(messageRequestDto.rentalId());
         MessageEntity messageEntity = messageMapper.toEntity(rental, user, messageRequestDto);
-        messageEntity.setCreated_at(LocalDateTime.now());
-        messageEntity.setUpdated_at(LocalDateTime.now());
+        messageEntity.setCreated_at(now);
+        messageEntity.setUpdated_at(now);
         messageRepository.save(messageEntity);
+        conversationBatchRepository.recordMessage(
+                messageRequestDto.rentalId(), messageRequestDto.userId(), messageEntity.getId(), now);
+        onMessageCreated(messageEntity.getId(), messageRequestDto, now);
+    }
+
+    @Override
+    public SseEmitter subscribeToOwnerMessages(String ownerEmail) {
+        Integer ownerId = userRepository.findIdByEmail(ownerEmail)
+                .orElseThrow(() -> new RuntimeException("User does not exist"));
+        return messagePushHub.subscribe(ownerId);
+    }
+
+    @Override
+    public MessageCountsResponse getOwnerMessageCounts(String ownerEmail) {
+        Integer ownerId = userRepository.findIdByEmail(ownerEmail)
+                .orElseThrow(() -> new RuntimeException("User does not exist"));
+        List<Integer> rentalIds = rentalRepository.findIdsByOwnerId(ownerId);
+        return new MessageCountsResponse(
+                messageCounters.ownerCount(ownerId),
+                messageCounters.counts(CounterType.RENTAL, rentalIds));
+    }
+
+    @Override
+    public InboxPageResponse getOwnerInbox(String ownerEmail, Integer limit, String after) {
+        int pageSize = resolvePageSize(limit);
+        Integer ownerId = userRepository.findIdByEmail(ownerEmail)
+                .orElseThrow(() -> new RuntimeException("User does not exist"));
+
+        // One extra row tells us whether another page exists without a count query
+        Limit fetchLimit = Limit.of(pageSize + 1);
+        List<ConversationDto> rows;
+        if (after == null || after.isBlank()) {
+            rows = conversationRepository.findLatestByOwner(ownerId, fetchLimit);
+        } else {
+            KeysetCursor cursor = KeysetCursor.decode(after);
+            rows = conversationRepository.findByOwnerBefore(ownerId, cursor.timestamp(), cursor.id(), fetchLimit);
+        }
+
+        boolean hasNext = rows.size() > pageSize;
+        List<ConversationDto> conversations = hasNext ? rows.subList(0, pageSize) : rows;
+        String nextCursor = null;
+        if (hasNext) {
+            ConversationDto last = conversations.get(conversations.size() - 1);
+            nextCursor = new KeysetCursor(last.lastActivity(), last.id()).encode();
+        }
+        return new InboxPageResponse(conversations, nextCursor);
+    }
+
+    @Override
+    public MessagesPageResponse getRentalMessages(Integer rentalId, Integer limit, String after) {
+        int pageSize = resolvePageSize(limit);
+        if (!exists(knownRentalIds, rentalId, rentalRepository::existsById)) {
+            throw new NoSuchElementException("Rental not found");
+        }
+
+        // One extra row tells us whether another page exists without a count query
+        Limit fetchLimit = Limit.of(pageSize + 1);
+        KeysetCursor cursor = after == null || after.isBlank() ? null : KeysetCursor.decode(after);
+        List<MessageDto> rows = cursor == null
+                ? messageRepository.findLatestByRental(rentalId, fetchLimit)
+                : messageRepository.findByRentalBefore(rentalId, cursor.timestamp(), cursor.id(), fetchLimit);
+
+        // Archived messages are all older than the hot ones, so the archive is only
+        // needed once the page has gone past the rental's oldest hot message. Another node
+        // may have archived at any time, so the archive is always checked at that point.
+        if (rows.size() <= pageSize) {
+            if (!rows.isEmpty()) {
+                MessageDto oldestHot = rows.get(rows.size() - 1);
+                cursor = new KeysetCursor(oldestHot.createdAt(), oldestHot.id());
+            }
+            Limit remaining = Limit.of(pageSize + 1 - rows.size());
+            List<MessageDto> archived = cursor == null
+                    ? archivedMessageRepository.findLatestByRental(rentalId, remaining)
+                    : archivedMessageRepository.findByRentalBefore(rentalId, cursor.timestamp(), cursor.id(), remaining);
+            if (!archived.isEmpty()) {
+                rows = new ArrayList<>(rows);
+                rows.addAll(archived);
+            }
+        }
+
+        boolean hasNext = rows.size() > pageSize;
+        List<MessageDto> messages = hasNext ? rows.subList(0, pageSize) : rows;
+        String nextCursor = null;
+        if (hasNext) {
+            MessageDto last = messages.get(messages.size() - 1);
+            nextCursor = new KeysetCursor(last.createdAt(), last.id()).encode();
+        }
+        return new MessagesPageResponse(messages, nextCursor);
+    }
+
+    /**
+     * Counts and announces the message once the transaction that stores it has committed,
+     * so a rolled back message is neither counted nor pushed to the owner.
+     */
+    private void onMessageCreated(Integer messageId, MessageRequestDto messageRequestDto, LocalDateTime createdAt) {
+        Integer ownerId = rentalOwnerIds.get(messageRequestDto.rentalId(),
+                rentalId -> rentalRepository.findOwnerIdById(rentalId).orElseThrow());
+        afterCommit(() -> {
+            messageCounters.increment(messageRequestDto.rentalId(), ownerId);
+            if (messagePushHub.hasSubscribers()) {
+                messagePushHub.publish(ownerId, new MessageEvent(messageId, messageRequestDto.rentalId(),
+                        messageRequestDto.userId(), messageRequestDto.message(), createdAt));
+            }
+        });
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+
+    private int resolvePageSize(Integer limit) {
+        int pageSize = limit == null ? defaultPageSize : limit;
+        if (pageSize < 1) {
+            throw new IllegalArgumentException("The limit must be greater than 0");
+        }
+        return Math.min(pageSize, maxPageSize);
+    }
+
+    private boolean exists(Cache<Integer, Boolean> knownIds, Integer id, Predicate<Integer> lookup) {
+        if (knownIds.getIfPresent(id) != null) {
+            return true;
+        }
+        boolean exists = lookup.test(id);
+        if (exists) {
+            knownIds.put(id, Boolean.TRUE);
+        }
+        return exists;
     }
 }
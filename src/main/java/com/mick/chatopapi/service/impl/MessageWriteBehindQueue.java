@@ -0,0 +1,169 @@
+package com.mick.chatopapi.service.impl;
+
+import com.mick.chatopapi.configuration.MessageWriteBehindProperties;
+import com.mick.chatopapi.dto.QueuedMessage;
+import com.mick.chatopapi.exception.MessageQueueFullException;
+import com.mick.chatopapi.repository.ConversationBatchRepository;
+import com.mick.chatopapi.repository.MessageBatchRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Accepts messages into a bounded in-memory queue and writes them to the database in
+ * batches, either every flush interval or as soon as a full batch is waiting.
+ * The queue is drained to the database on graceful shutdown.
+ */
+@Component
+public class MessageWriteBehindQueue {
+
+    private static final Logger logger = LoggerFactory.getLogger(MessageWriteBehindQueue.class);
+
+    private final MessageWriteBehindProperties properties;
+    private final MessageBatchRepository messageBatchRepository;
+    private final ConversationBatchRepository conversationBatchRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final BlockingQueue<QueuedMessage> queue;
+    // Only touched from the flusher thread, or after it has stopped
+    private final List<QueuedMessage> retryBatch = new ArrayList<>();
+    private ScheduledExecutorService flusher;
+    private volatile boolean accepting;
+
+    public MessageWriteBehindQueue(MessageWriteBehindProperties properties,
+                                   MessageBatchRepository messageBatchRepository,
+                                   ConversationBatchRepository conversationBatchRepository,
+                                   PlatformTransactionManager transactionManager,
+                                   MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.messageBatchRepository = messageBatchRepository;
+        this.conversationBatchRepository = conversationBatchRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.queue = new ArrayBlockingQueue<>(properties.getQueueCapacity());
+        meterRegistry.gauge("chatop.messages.write.behind.queue.size", queue, BlockingQueue::size);
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        flusher = Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform().name("message-flusher").factory());
+        long intervalMillis = properties.getFlushInterval().toMillis();
+        flusher.scheduleWithFixedDelay(this::flushSafely, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+        accepting = true;
+    }
+
+    public boolean isEnabled() {
+        return properties.isEnabled();
+    }
+
+    public void enqueue(QueuedMessage message) {
+        if (!accepting || !queue.offer(message)) {
+            throw new MessageQueueFullException(retryAfterSeconds());
+        }
+        if (queue.size() >= properties.getFlushSize()) {
+            try {
+                flusher.execute(this::flushSafely);
+            } catch (RejectedExecutionException e) {
+                // Shutting down: the final flush in stop() picks the message up
+            }
+        }
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        if (flusher == null) {
+            return;
+        }
+        accepting = false;
+        flusher.shutdown();
+        if (!flusher.awaitTermination(30, TimeUnit.SECONDS)) {
+            logger.warn("Message flusher did not stop in time");
+            flusher.shutdownNow();
+        }
+        flush();
+        if (!retryBatch.isEmpty() || !queue.isEmpty()) {
+            logger.error("{} queued messages could not be saved on shutdown", retryBatch.size() + queue.size());
+        }
+    }
+
+    private void flushSafely() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            logger.error("Unable to flush queued messages", e);
+        }
+    }
+
+    private void flush() {
+        if (!retryBatch.isEmpty()) {
+            List<QueuedMessage> batch = new ArrayList<>(retryBatch);
+            retryBatch.clear();
+            if (!write(batch)) {
+                return;
+            }
+        }
+        List<QueuedMessage> batch = new ArrayList<>(properties.getFlushSize());
+        while (queue.drainTo(batch, properties.getFlushSize()) > 0) {
+            if (!write(batch)) {
+                return;
+            }
+            batch = new ArrayList<>(properties.getFlushSize());
+        }
+    }
+
+    /**
+     * Returns false when the database is unavailable; the batch is then kept for the next flush.
+     */
+    private boolean write(List<QueuedMessage> batch) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> insert(batch));
+            return true;
+        } catch (DataIntegrityViolationException e) {
+            writeOneByOne(batch);
+            return true;
+        } catch (DataAccessException e) {
+            logger.warn("Unable to save {} queued messages, will retry: {}", batch.size(), e.getMessage());
+            retryBatch.addAll(batch);
+            return false;
+        }
+    }
+
+    private void writeOneByOne(List<QueuedMessage> batch) {
+        for (QueuedMessage message : batch) {
+            try {
+                transactionTemplate.executeWithoutResult(status -> insert(List.of(message)));
+            } catch (DataIntegrityViolationException e) {
+                logger.error("Dropping queued message for rental {} from user {}: {}",
+                        message.rentalId(), message.userId(), e.getMostSpecificCause().getMessage());
+            } catch (DataAccessException e) {
+                retryBatch.add(message);
+            }
+        }
+    }
+
+    private void insert(List<QueuedMessage> batch) {
+        List<Integer> ids = messageBatchRepository.insertAll(batch);
+        conversationBatchRepository.recordAll(batch, ids);
+    }
+
+    private long retryAfterSeconds() {
+        return Math.max(1, properties.getFlushInterval().toSeconds());
+    }
+}
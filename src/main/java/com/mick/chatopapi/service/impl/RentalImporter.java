@@ -0,0 +1,212 @@
+package com.mick.chatopapi.service.impl;
+
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.dataformat.csv.CsvMapper;
+import com.fasterxml.jackson.dataformat.csv.CsvSchema;
+import com.mick.chatopapi.dto.RentalDto;
+import com.mick.chatopapi.dto.RentalImportError;
+import com.mick.chatopapi.dto.RentalImportResponse;
+import com.mick.chatopapi.dto.RentalImportRow;
+import com.mick.chatopapi.image.ContentAddressedImageStore;
+import com.mick.chatopapi.repository.ImageRepository;
+import com.mick.chatopapi.repository.RentalBatchRepository;
+import com.mick.chatopapi.search.RentalSearchIndex;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Reads rentals from a streamed JSON array or CSV body and inserts them in JDBC batches.
+ * Invalid rows are reported and skipped; they never abort the rest of the import.
+ * A picture pointing to one of our stored images takes a reference on it, like an upload would.
+ */
+@Component
+public class RentalImporter {
+
+    private static final int MAX_REPORTED_ERRORS = 1000;
+
+    private final RentalBatchRepository rentalBatchRepository;
+    private final ImageRepository imageRepository;
+    private final RentalSearchIndex rentalSearchIndex;
+    private final Validator validator;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectReader jsonReader;
+    private final ObjectReader csvReader;
+
+    @Value("${chatop.rentals.import.batch-size:500}")
+    private int batchSize;
+
+    public RentalImporter(RentalBatchRepository rentalBatchRepository, ImageRepository imageRepository,
+                          RentalSearchIndex rentalSearchIndex, Validator validator,
+                          PlatformTransactionManager transactionManager, ObjectMapper objectMapper) {
+        this.rentalBatchRepository = rentalBatchRepository;
+        this.imageRepository = imageRepository;
+        this.rentalSearchIndex = rentalSearchIndex;
+        this.validator = validator;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.jsonReader = objectMapper.readerFor(RentalImportRow.class);
+        this.csvReader = new CsvMapper().readerFor(RentalImportRow.class)
+                .with(CsvSchema.emptySchema().withHeader());
+    }
+
+    public RentalImportResponse importRentals(InputStream body, boolean csv, Integer ownerId) throws IOException {
+        ImportReport report = new ImportReport();
+        LocalDateTime now = LocalDateTime.now();
+        List<RentalImportRow> batch = new ArrayList<>(batchSize);
+        List<Long> batchRowNumbers = new ArrayList<>(batchSize);
+        long rowNumber = 0;
+
+        try (MappingIterator<RentalImportRow> rows = (csv ? csvReader : jsonReader).readValues(body)) {
+            while (true) {
+                rowNumber++;
+                RentalImportRow row;
+                try {
+                    if (!rows.hasNextValue()) {
+                        break;
+                    }
+                    row = rows.nextValue();
+                } catch (JsonParseException e) {
+                    report.reject(rowNumber, "Malformed input, import stopped: " + e.getOriginalMessage());
+                    break;
+                } catch (JsonMappingException e) {
+                    report.reject(rowNumber, "Invalid value: " + e.getOriginalMessage());
+                    continue;
+                }
+
+                String violations = validate(row);
+                if (violations != null) {
+                    report.reject(rowNumber, violations);
+                    continue;
+                }
+                batch.add(row);
+                batchRowNumbers.add(rowNumber);
+                if (batch.size() >= batchSize) {
+                    flush(batch, batchRowNumbers, ownerId, now, report);
+                }
+            }
+        }
+        flush(batch, batchRowNumbers, ownerId, now, report);
+        return report.toResponse();
+    }
+
+    private String validate(RentalImportRow row) {
+        Set<ConstraintViolation<RentalImportRow>> violations = validator.validate(row);
+        Stream<String> messages = violations.stream().map(ConstraintViolation::getMessage);
+        if (row.picture() != null && !isValidUri(row.picture())) {
+            messages = Stream.concat(messages, Stream.of("The picture must be a valid URL."));
+        }
+        String joined = messages.sorted().collect(Collectors.joining("; "));
+        return joined.isEmpty() ? null : joined;
+    }
+
+    private static boolean isValidUri(String picture) {
+        try {
+            new URI(picture);
+            return true;
+        } catch (URISyntaxException e) {
+            return false;
+        }
+    }
+
+    private void flush(List<RentalImportRow> batch, List<Long> rowNumbers, Integer ownerId,
+                       LocalDateTime now, ImportReport report) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        try {
+            List<Integer> ids = transactionTemplate.execute(status -> insert(batch, ownerId, now));
+            imported(batch, ids, ownerId, now, report);
+        } catch (DataAccessException e) {
+            // The batch was rolled back; retry row by row to find the offending rows
+            for (int i = 0; i < batch.size(); i++) {
+                List<RentalImportRow> single = List.of(batch.get(i));
+                try {
+                    List<Integer> ids = transactionTemplate.execute(status -> insert(single, ownerId, now));
+                    imported(single, ids, ownerId, now, report);
+                } catch (DataAccessException rowException) {
+                    report.reject(rowNumbers.get(i), rowException.getMostSpecificCause().getMessage());
+                }
+            }
+        }
+        batch.clear();
+        rowNumbers.clear();
+    }
+
+    /**
+     * Inserts the rows and takes a reference on the stored images they point to, so that replacing
+     * the picture later releases a reference this rental actually holds.
+     */
+    private List<Integer> insert(List<RentalImportRow> rows, Integer ownerId, LocalDateTime now) {
+        List<String> filenames = rows.stream()
+                .map(row -> ContentAddressedImageStore.filenameOf(row.picture()))
+                .filter(Objects::nonNull)
+                .toList();
+        for (String filename : filenames) {
+            if (!imageRepository.existsById(filename)) {
+                throw unknownImage(filename);
+            }
+        }
+        List<Integer> ids = rentalBatchRepository.insertAll(rows, ownerId, now);
+        for (String filename : filenames) {
+            // Released since the check above; the whole batch rolls back
+            if (imageRepository.incrementRefCount(filename) == 0) {
+                throw unknownImage(filename);
+            }
+        }
+        return ids;
+    }
+
+    private static DataIntegrityViolationException unknownImage(String filename) {
+        return new DataIntegrityViolationException("The picture points to an unknown image: " + filename);
+    }
+
+    private void imported(List<RentalImportRow> rows, List<Integer> ids, Integer ownerId,
+                          LocalDateTime now, ImportReport report) {
+        List<RentalDto> rentals = new ArrayList<>(rows.size());
+        for (int i = 0; i < rows.size(); i++) {
+            RentalImportRow row = rows.get(i);
+            rentals.add(new RentalDto(ids.get(i), row.name(), row.surface(), row.price(),
+                    row.description(), row.picture(), ownerId, now, now));
+        }
+        rentalSearchIndex.indexAll(rentals);
+        report.imported += rows.size();
+    }
+
+    private static final class ImportReport {
+        private long imported;
+        private long failed;
+        private final List<RentalImportError> errors = new ArrayList<>();
+
+        void reject(long rowNumber, String reason) {
+            failed++;
+            if (errors.size() < MAX_REPORTED_ERRORS) {
+                errors.add(new RentalImportError(rowNumber, reason));
+            }
+        }
+
+        RentalImportResponse toResponse() {
+            return new RentalImportResponse(imported, failed, errors);
+        }
+    }
+}
@@ -1,32 +1,48 @@
 package com.mick.chatopapi.service.impl;
 
+import com.mick.chatopapi.configuration.CacheConfiguration;
 import com.mick.chatopapi.dto.NewRentalDto;
 import com.mick.chatopapi.dto.RentalDto;
+import com.mick.chatopapi.dto.RentalImportResponse;
+import com.mick.chatopapi.dto.RentalSearchCriteria;
+import com.mick.chatopapi.dto.RentalsPageResponse;
+import com.mick.chatopapi.dto.RentalsVersion;
+import com.mick.chatopapi.dto.RentalsSearchResponse;
 import com.mick.chatopapi.dto.UpdateRentalDto;
 import com.mick.chatopapi.entity.RentalEntity;
 import com.mick.chatopapi.entity.UserEntity;
+import com.mick.chatopapi.image.ContentAddressedImageStore;
 import com.mick.chatopapi.mapper.RentalMapper;
+import com.mick.chatopapi.pagination.KeysetCursor;
 import com.mick.chatopapi.repository.RentalRepository;
+import com.mick.chatopapi.repository.RentalSpecifications;
 import com.mick.chatopapi.repository.UserRepository;
+import com.mick.chatopapi.search.RentalSearchIndex;
 import com.mick.chatopapi.service.RentalService;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.multipart.MultipartFile;
 import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
 import java.io.IOException;
-import java.net.URI;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
-import java.nio.file.StandardCopyOption;
+import java.io.InputStream;
 import java.time.LocalDateTime;
+import java.time.ZoneOffset;
 import java.util.List;
+import java.util.Map;
 import java.util.NoSuchElementException;
-import java.util.Optional;
-import java.util.UUID;
+import java.util.Objects;
+import java.util.function.Consumer;
+import java.util.function.Function;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
 public class RentalServiceImpl implements RentalService {
@@ -34,26 +50,120 @@ public class RentalServiceImpl implements RentalService {
     private final RentalRepository rentalRepository;
     private final RentalMapper rentalMapper;
     private final UserRepository userRepository;
+    private final RentalSearchIndex rentalSearchIndex;
+    private final RentalImporter rentalImporter;
+    private final ContentAddressedImageStore contentAddressedImageStore;
 
-    @Value("${spring.servlet.multipart.location}")
-    private String uploadDir;
+    @Value("${chatop.rentals.page.default-size:20}")
+    private int defaultPageSize;
 
-    public RentalServiceImpl(RentalRepository rentalRepository, RentalMapper rentalMapper, UserRepository userRepository) {
+    @Value("${chatop.rentals.page.max-size:100}")
+    private int maxPageSize;
+
+    @Value("${chatop.search.max-page:100}")
+    private int maxSearchPage;
+
+    public RentalServiceImpl(RentalRepository rentalRepository, RentalMapper rentalMapper, UserRepository userRepository, RentalSearchIndex rentalSearchIndex, RentalImporter rentalImporter, ContentAddressedImageStore contentAddressedImageStore) {
         this.rentalRepository = rentalRepository;
         this.rentalMapper = rentalMapper;
         this.userRepository = userRepository;
+        this.rentalSearchIndex = rentalSearchIndex;
+        this.rentalImporter = rentalImporter;
+        this.contentAddressedImageStore = contentAddressedImageStore;
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public void streamAllRentals(Consumer<RentalDto> consumer) {
+        try (Stream<RentalDto> rentals = rentalRepository.streamAllRentalDtos()) {
+            rentals.forEach(consumer);
+        }
+    }
+
+    @Override
+    public RentalsPageResponse getRentalsPage(Integer limit, String after) {
+        int pageSize = resolvePageSize(limit);
+
+        // One extra row tells us whether another page exists without a count query
+        Limit fetchLimit = Limit.of(pageSize + 1);
+        List<RentalDto> rows;
+        if (after == null || after.isBlank()) {
+            rows = rentalRepository.findFirstPage(fetchLimit);
+        } else {
+            KeysetCursor cursor = KeysetCursor.decode(after);
+            rows = rentalRepository.findPageAfter(cursor.timestamp(), cursor.id(), fetchLimit);
+        }
+
+        boolean hasNext = rows.size() > pageSize;
+        List<RentalDto> rentals = hasNext ? rows.subList(0, pageSize) : rows;
+        String nextCursor = null;
+        if (hasNext) {
+            RentalDto last = rentals.get(rentals.size() - 1);
+            nextCursor = new KeysetCursor(last.createdAt(), last.id()).encode();
+        }
+        return new RentalsPageResponse(rentals, nextCursor);
+    }
+
+    @Override
+    public RentalsSearchResponse searchRentals(RentalSearchCriteria criteria, Integer page, Integer limit) {
+        int pageNumber = resolvePageNumber(page);
+        int pageSize = resolvePageSize(limit);
+
+        Page<RentalEntity> rentals = rentalRepository.findAll(
+                RentalSpecifications.matching(criteria),
+                PageRequest.of(pageNumber, pageSize));
+        return new RentalsSearchResponse(
+                rentals.map(rentalMapper::toDTO).getContent(),
+                rentals.getNumber(),
+                rentals.getSize(),
+                rentals.getTotalElements(),
+                rentals.getTotalPages());
     }
 
     @Override
-    public List<RentalDto> getAllRentals() {
-        List<RentalEntity> rentals = rentalRepository.findAll();
-        return rentals.stream().map(rentalMapper::toDTO).collect(Collectors.toList());
+    public RentalsSearchResponse fullTextSearch(String text, Integer page, Integer limit) {
+        if (text == null || text.isBlank()) {
+            throw new IllegalArgumentException("The search text is required");
+        }
+        int pageNumber = resolvePageNumber(page);
+        int pageSize = resolvePageSize(limit);
+        // Relevance paging collects every hit up to the requested page; deep pages are refused
+        if (pageNumber > maxSearchPage) {
+            throw new IllegalArgumentException("The page must not exceed " + maxSearchPage);
+        }
+
+        RentalSearchIndex.SearchHits hits = rentalSearchIndex.search(text, pageNumber * pageSize, pageSize);
+        if (hits.ids().isEmpty()) {
+            return new RentalsSearchResponse(List.of(), pageNumber, pageSize, hits.totalHits(), 0);
+        }
+        Map<Integer, RentalDto> rentalsById = rentalRepository.findRentalDtosByIds(hits.ids()).stream()
+                .collect(Collectors.toMap(RentalDto::id, Function.identity()));
+        List<RentalDto> rentals = hits.ids().stream()
+                .map(rentalsById::get)
+                .filter(Objects::nonNull)
+                .toList();
+        int totalPages = (int) ((hits.totalHits() + pageSize - 1) / pageSize);
+        return new RentalsSearchResponse(rentals, pageNumber, pageSize, hits.totalHits(), totalPages);
     }
 
     @Override
+    @Cacheable(cacheNames = CacheConfiguration.RENTALS_CACHE, key = "#id", unless = "#result == null")
     public RentalDto getRentalById(Integer id) {
-        Optional<RentalEntity> rentalEntity = rentalRepository.findById(id);
-        return rentalEntity.map(rentalMapper::toDTO).orElse(null);
+        return rentalRepository.findRentalDtoById(id).orElse(null);
+    }
+
+    /**
+     * Derived from the rows themselves, so every node behind the load balancer agrees on it:
+     * a write moves the latest update time forward and an insert or delete changes the count.
+     */
+    @Override
+    public String getRentalsVersion() {
+        RentalsVersion version = rentalRepository.findRentalsVersion();
+        LocalDateTime lastUpdatedAt = version.lastUpdatedAt();
+        if (lastUpdatedAt == null) {
+            return "0";
+        }
+        return version.count() + "-" + lastUpdatedAt.toEpochSecond(ZoneOffset.UTC) + "." + lastUpdatedAt.getNano();
     }
 
     @Override
@@ -73,10 +183,11 @@ public class RentalServiceImpl implements RentalService {
         rentalEntity.setCreated_at(LocalDateTime.now());
         rentalEntity.setUpdated_at(LocalDateTime.now());
         rentalRepository.save(rentalEntity);
-        rentalMapper.toDTO(rentalEntity);
+        rentalSearchIndex.index(rentalMapper.toDTO(rentalEntity));
     }
 
     @Override
+    @CacheEvict(cacheNames = CacheConfiguration.RENTALS_CACHE, key = "#id")
     public void updateRental(Integer id, UpdateRentalDto updateRentalDto) {
         RentalEntity existingRental  = rentalRepository.findById(id).orElseThrow(
                 ()->new NoSuchElementException("Rental not found")
@@ -86,8 +197,10 @@ public class RentalServiceImpl implements RentalService {
         existingRental .setPrice(updateRentalDto.price());
         existingRental .setDescription(updateRentalDto.description());
         existingRental .setUpdated_at(LocalDateTime.now());
+        // Store the new picture before releasing the old one, they may share the same content
+        String oldPicture = null;
         if (updateRentalDto.picture() != null && !updateRentalDto.picture().isEmpty()) {
-            removeOldFileIfNeeded(existingRental.getPicture());
+            oldPicture = existingRental.getPicture();
             try {
                 String savedFilename = saveFile(updateRentalDto.picture());
                 existingRental.setPicture(getImageUrl(savedFilename));
@@ -96,7 +209,46 @@ public class RentalServiceImpl implements RentalService {
             }
         }
         rentalRepository.save(existingRental);
-        rentalMapper.toDTO(existingRental);
+        removeOldFileIfNeeded(oldPicture);
+        rentalSearchIndex.index(rentalMapper.toDTO(existingRental));
+    }
+
+    @Override
+    @CacheEvict(cacheNames = CacheConfiguration.RENTALS_CACHE, key = "#id")
+    public void updateRentalPicture(Integer id, InputStream picture, long contentLength) throws IOException {
+        RentalEntity existingRental = rentalRepository.findById(id).orElseThrow(
+                () -> new NoSuchElementException("Rental not found")
+        );
+        String oldPicture = existingRental.getPicture();
+        existingRental.setPicture(getImageUrl(contentAddressedImageStore.store(picture, contentLength)));
+        existingRental.setUpdated_at(LocalDateTime.now());
+        rentalRepository.save(existingRental);
+        removeOldFileIfNeeded(oldPicture);
+    }
+
+    @Override
+    public RentalImportResponse importRentals(InputStream body, boolean csv) throws IOException {
+        String email = SecurityContextHolder.getContext().getAuthentication().getName();
+        UserEntity owner = userRepository.findByEmail(email)
+                .orElseThrow(() -> new RuntimeException("Unauthenticated user"));
+
+        return rentalImporter.importRentals(body, csv, owner.getId());
+    }
+
+    private int resolvePageNumber(Integer page) {
+        int pageNumber = page == null ? 0 : page;
+        if (pageNumber < 0) {
+            throw new IllegalArgumentException("The page must not be negative");
+        }
+        return pageNumber;
+    }
+
+    private int resolvePageSize(Integer limit) {
+        int pageSize = limit == null ? defaultPageSize : limit;
+        if (pageSize < 1) {
+            throw new IllegalArgumentException("The limit must be greater than 0");
+        }
+        return Math.min(pageSize, maxPageSize);
     }
 
     private String getImageUrl(String filename) {
@@ -106,28 +258,19 @@ public class RentalServiceImpl implements RentalService {
                 .toUriString();
     }
     private String saveFile(MultipartFile file) throws IOException {
-        Path uploadPath = Paths.get(uploadDir);
-        if (!Files.exists(uploadPath)) {
-            Files.createDirectories(uploadPath);
-        }
-
-        String fileName = UUID.randomUUID() + "_" + file.getOriginalFilename();
-        Path filePath = uploadPath.resolve(fileName);
-        Files.copy(file.getInputStream(), filePath, StandardCopyOption.REPLACE_EXISTING);
-
-        return fileName;
+        return contentAddressedImageStore.store(file);
     }
 
+    /**
+     * Only called once the save that stops pointing to the image has committed, which save() does on its own
+     * here: a failed save then keeps the old picture, and the new one is left to the orphan collector.
+     */
     private void removeOldFileIfNeeded(String oldImageUrl) {
         if (oldImageUrl == null) return;
-        String filename = Paths.get(URI.create(oldImageUrl).getPath()).getFileName().toString();
-
-        Path uploadPath = Paths.get(uploadDir);
-        Path fileToDelete = uploadPath.resolve(filename);
-        try {
-            Files.deleteIfExists(fileToDelete);
-        } catch (IOException e) {
-            System.err.println("Unable to delete old photo : " + e.getMessage());
+        // Imported rentals may point anywhere; only our own images hold a reference
+        String filename = ContentAddressedImageStore.filenameOf(oldImageUrl);
+        if (filename != null) {
+            contentAddressedImageStore.release(filename);
         }
     }
 }
@@ -0,0 +1,80 @@
+package com.mick.chatopapi.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mick.chatopapi.dto.RentalDto;
+import com.mick.chatopapi.image.HotImageCache;
+import com.mick.chatopapi.image.storage.ImageStorage;
+import com.mick.chatopapi.service.MessageService;
+import com.mick.chatopapi.service.RentalService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.time.LocalDateTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.not;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+class RentalControllerTest {
+
+    private static final LocalDateTime UPDATED_AT = LocalDateTime.of(2024, 1, 1, 12, 0);
+
+    private final RentalService rentalService = mock(RentalService.class);
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void setUp() {
+        RentalController controller = new RentalController(rentalService, new ObjectMapper(),
+                mock(HotImageCache.class), mock(ImageStorage.class), mock(MessageService.class));
+        mockMvc = MockMvcBuilders.standaloneSetup(controller).build();
+    }
+
+    @Test
+    void getRentalById_shouldAnswerNotModifiedWhileTheServedRentalIsUnchanged() throws Exception {
+        when(rentalService.getRentalById(1)).thenReturn(rental(UPDATED_AT));
+
+        String etag = mockMvc.perform(get("/api/rentals/1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.name").value("flat"))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        assertThat(etag).isNotBlank();
+        mockMvc.perform(get("/api/rentals/1").header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string(HttpHeaders.ETAG, etag))
+                .andExpect(content().string(""));
+    }
+
+    @Test
+    void getRentalById_shouldServeTheNewBodyOnceTheRentalChanged() throws Exception {
+        when(rentalService.getRentalById(1)).thenReturn(rental(UPDATED_AT));
+        String etag = mockMvc.perform(get("/api/rentals/1"))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        when(rentalService.getRentalById(1)).thenReturn(rental(UPDATED_AT.plusSeconds(1)));
+
+        mockMvc.perform(get("/api/rentals/1").header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, not(etag)));
+    }
+
+    @Test
+    void getRentalById_shouldAnswerNotFoundForAnUnknownRental() throws Exception {
+        mockMvc.perform(get("/api/rentals/2").header(HttpHeaders.IF_NONE_MATCH, "\"*\""))
+                .andExpect(status().isNotFound())
+                .andExpect(jsonPath("$.reason").value("Rental not found"));
+    }
+
+    private static RentalDto rental(LocalDateTime updatedAt) {
+        return new RentalDto(1, "flat", 30.0, 500.0, "description", "picture.jpg", 1, UPDATED_AT, updatedAt);
+    }
+}
@@ -0,0 +1,263 @@
+package com.mick.chatopapi.image;
+
+import com.mick.chatopapi.configuration.ImageStorageConfiguration;
+import com.mick.chatopapi.configuration.ImageStorageProperties;
+import com.mick.chatopapi.configuration.ImageUploadProperties;
+import com.mick.chatopapi.entity.ImageEntity;
+import com.mick.chatopapi.entity.RentalEntity;
+import com.mick.chatopapi.entity.UserEntity;
+import com.mick.chatopapi.exception.ImageTooLargeException;
+import com.mick.chatopapi.exception.UnsupportedImageTypeException;
+import com.mick.chatopapi.image.storage.ImageStorage;
+import com.mick.chatopapi.repository.ImageRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.context.bean.override.mockito.MockitoSpyBean;
+import org.springframework.util.FileSystemUtils;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.doCallRealMethod;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+// MySQL mode, for the upsert recording new images
+@DataJpaTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:content-addressed;MODE=MySQL;DB_CLOSE_DELAY=-1",
+        "spring.servlet.multipart.location=" + ContentAddressedImageStoreTest.UPLOAD_DIR,
+        "chatop.images.upload.max-size=1KB"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import({ContentAddressedImageStore.class, ImageStorageConfiguration.class})
+@EnableConfigurationProperties({ImageUploadProperties.class, ImageStorageProperties.class})
+class ContentAddressedImageStoreTest {
+
+    static final String UPLOAD_DIR = "target/test-uploads/content-addressed";
+
+    private static final byte[] JPEG = {(byte) 0xFF, (byte) 0xD8, (byte) 0xFF, (byte) 0xE0, 1, 2, 3, 4};
+
+    @Autowired
+    private ContentAddressedImageStore contentAddressedImageStore;
+
+    @Autowired
+    private ImageRepository imageRepository;
+
+    @MockitoBean
+    private ImageVariantGenerator imageVariantGenerator;
+
+    @MockitoBean
+    private HotImageCache hotImageCache;
+
+    @MockitoSpyBean
+    private ImageStorage imageStorage;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Test
+    void store_shouldKeepOneFilePerContent() throws IOException {
+        FileSystemUtils.deleteRecursively(Paths.get(UPLOAD_DIR));
+
+        String first = contentAddressedImageStore.store(new MockMultipartFile("picture", "house.jpeg", "image/jpeg", JPEG));
+        String second = contentAddressedImageStore.store(new MockMultipartFile("picture", "copy.png", "image/png", JPEG));
+
+        assertThat(first).isEqualTo(second).matches("[0-9a-f]{64}\\.jpg");
+        try (var files = Files.walk(Paths.get(UPLOAD_DIR))) {
+            assertThat(files.filter(Files::isRegularFile))
+                    .containsExactly(Paths.get(UPLOAD_DIR, first.substring(0, 2), first.substring(2, 4), first));
+        }
+        assertThat(refCount(first)).isEqualTo(2);
+    }
+
+    @Test
+    void store_shouldCountTheReferenceWhenAnotherNodeRecordedTheImageFirst() throws IOException {
+        String filename = contentAddressedImageStore.store(new MockMultipartFile("picture", "a.jpg", "image/jpeg", JPEG));
+        ImageEntity image = entityManager.find(ImageEntity.class, filename);
+
+        // What a node that saw no row yet does once another node has inserted it
+        imageRepository.insertOrIncrementRefCount(filename, image.getSha256(), image.getSize(), LocalDateTime.now());
+
+        assertThat(refCount(filename)).isEqualTo(2);
+    }
+
+    @Test
+    void release_shouldDeleteFileWithLastReference() throws IOException {
+        String filename = contentAddressedImageStore.store(new MockMultipartFile("picture", "a.jpg", "image/jpeg", JPEG));
+        contentAddressedImageStore.store(new MockMultipartFile("picture", "b.jpg", "image/jpeg", JPEG));
+        Path file = ImageLayout.shardedPath(Paths.get(UPLOAD_DIR), filename);
+
+        contentAddressedImageStore.release(filename);
+        assertThat(file).exists();
+        assertThat(refCount(filename)).isEqualTo(1);
+
+        contentAddressedImageStore.release(filename);
+        assertThat(file).doesNotExist();
+        assertThat(imageRepository.existsById(filename)).isFalse();
+    }
+
+    @Test
+    void release_shouldKeepTheRowUntilTheFileIsDeleted() throws IOException {
+        String filename = contentAddressedImageStore.store(new MockMultipartFile("picture", "a.jpg", "image/jpeg", JPEG));
+        Path file = ImageLayout.shardedPath(Paths.get(UPLOAD_DIR), filename);
+        doThrow(new IOException("storage unavailable")).when(imageStorage).delete(filename);
+
+        contentAddressedImageStore.release(filename);
+
+        // Still recorded at zero references, for the orphan collector to retry
+        assertThat(file).exists();
+        assertThat(refCount(filename)).isZero();
+        verify(imageVariantGenerator, never()).deleteVariants(filename);
+
+        doCallRealMethod().when(imageStorage).delete(filename);
+        assertThat(contentAddressedImageStore.purgeIfUnreferenced(filename, 0)).isTrue();
+        assertThat(file).doesNotExist();
+        assertThat(imageRepository.existsById(filename)).isFalse();
+    }
+
+    @Test
+    void purgeIfUnreferenced_shouldKeepAnImageReferencedAgainSinceTheSnapshot() throws IOException {
+        // A leaked reference: the rental that held it was never saved
+        String filename = contentAddressedImageStore.store(new MockMultipartFile("picture", "a.jpg", "image/jpeg", JPEG));
+        int snapshot = refCount(filename);
+        Path file = ImageLayout.shardedPath(Paths.get(UPLOAD_DIR), filename);
+
+        // The same content is uploaded again and a rental now points to it
+        contentAddressedImageStore.store(new MockMultipartFile("picture", "b.jpg", "image/jpeg", JPEG));
+        RentalEntity rental = persistRental("http://localhost:3001/api/rentals/image/" + filename);
+
+        assertThat(contentAddressedImageStore.purgeIfUnreferenced(filename, snapshot)).isFalse();
+        assertThat(contentAddressedImageStore.purgeIfUnreferenced(filename, refCount(filename))).isFalse();
+        assertThat(file).exists();
+
+        entityManager.remove(entityManager.find(RentalEntity.class, rental.getId()));
+        entityManager.flush();
+        assertThat(contentAddressedImageStore.purgeIfUnreferenced(filename, refCount(filename))).isTrue();
+        assertThat(file).doesNotExist();
+        assertThat(imageRepository.existsById(filename)).isFalse();
+    }
+
+    @Test
+    void purgeIfUnreferenced_shouldKeepALegacyImageWhoseUrlIsEncoded() throws IOException {
+        String filename = "1234abcd_Ma maison (2).jpg";
+        Path legacyFile = Paths.get(UPLOAD_DIR, filename);
+        Files.createDirectories(legacyFile.getParent());
+        Files.write(legacyFile, JPEG);
+        persistRental(UriComponentsBuilder.fromUriString("http://localhost:3001")
+                .path("/api/rentals/image/").path(filename).toUriString());
+
+        assertThat(contentAddressedImageStore.purgeIfUnreferenced(filename, 0)).isFalse();
+        assertThat(legacyFile).exists();
+    }
+
+    @Test
+    void release_shouldDeleteUntrackedLegacyFile() throws IOException {
+        Path legacyFile = Paths.get(UPLOAD_DIR, "0b5f1c2e_house.jpg");
+        Files.createDirectories(legacyFile.getParent());
+        Files.write(legacyFile, JPEG);
+
+        contentAddressedImageStore.release(legacyFile.getFileName().toString());
+
+        assertThat(legacyFile).doesNotExist();
+    }
+
+    @Test
+    void migrateToShardedLayout_shouldMoveFlatFileAndKeepItReachable() throws IOException {
+        Path root = Paths.get(UPLOAD_DIR);
+        Path legacyFile = root.resolve("legacy_house.jpg");
+        Files.createDirectories(root);
+        Files.write(legacyFile, JPEG);
+
+        assertThat(ImageLayout.locate(root, "legacy_house.jpg")).isEqualTo(legacyFile);
+        assertThat(contentAddressedImageStore.migrateToShardedLayout("legacy_house.jpg")).isTrue();
+        assertThat(contentAddressedImageStore.migrateToShardedLayout("legacy_house.jpg")).isFalse();
+
+        Path shardedFile = ImageLayout.shardedPath(root, "legacy_house.jpg");
+        assertThat(legacyFile).doesNotExist();
+        assertThat(ImageLayout.locate(root, "legacy_house.jpg")).isEqualTo(shardedFile).exists();
+
+        contentAddressedImageStore.release("legacy_house.jpg");
+        assertThat(shardedFile).doesNotExist();
+    }
+
+    @Test
+    void store_shouldAbortOversizedStreamWithoutReadingItAll() {
+        CountingEndlessStream endless = new CountingEndlessStream();
+        InputStream upload = new SequenceInputStream(new ByteArrayInputStream(JPEG), endless);
+
+        assertThatThrownBy(() -> contentAddressedImageStore.store(upload, -1))
+                .isInstanceOf(ImageTooLargeException.class);
+        assertThat(endless.read).isLessThan(64 * 1024);
+    }
+
+    @Test
+    void store_shouldRejectDeclaredOversizeBeforeReading() {
+        CountingEndlessStream endless = new CountingEndlessStream();
+
+        assertThatThrownBy(() -> contentAddressedImageStore.store(endless, 4096))
+                .isInstanceOf(ImageTooLargeException.class);
+        assertThat(endless.read).isZero();
+    }
+
+    @Test
+    void store_shouldRejectNonImageContent() {
+        InputStream upload = new ByteArrayInputStream("<html></html>".getBytes());
+
+        assertThatThrownBy(() -> contentAddressedImageStore.store(upload, -1))
+                .isInstanceOf(UnsupportedImageTypeException.class);
+    }
+
+    private RentalEntity persistRental(String picture) {
+        LocalDateTime now = LocalDateTime.now();
+        UserEntity owner = new UserEntity("owner@test.com", "owner", "hash");
+        owner.setCreated_at(now);
+        owner.setUpdated_at(now);
+        entityManager.persist(owner);
+        RentalEntity rental = new RentalEntity("flat", 30.0, 500.0, "description");
+        rental.setPicture(picture);
+        rental.setOwner(owner);
+        rental.setCreated_at(now);
+        rental.setUpdated_at(now);
+        entityManager.persist(rental);
+        entityManager.flush();
+        return rental;
+    }
+
+    private int refCount(String filename) {
+        entityManager.clear();
+        return imageRepository.findById(filename).map(ImageEntity::getRef_count).orElse(0);
+    }
+
+    private static class CountingEndlessStream extends InputStream {
+        private long read;
+
+        @Override
+        public int read() {
+            read++;
+            return 0;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            read += len;
+            return len;
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package com.mick.chatopapi.image;
+
+import com.mick.chatopapi.configuration.HotImageCacheProperties;
+import com.mick.chatopapi.image.storage.ImageStorage;
+import com.mick.chatopapi.image.storage.InMemoryImageStorage;
+import com.mick.chatopapi.image.storage.StoredImage;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.http.MediaType;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+class HotImageCacheTest {
+
+    private static final byte[] PNG_HEADER = {(byte) 0x89, 'P', 'N', 'G', 0x0D, 0x0A, 0x1A, 0x0A};
+
+    private final InMemoryImageStorage imageStorage = new InMemoryImageStorage();
+    private HotImageCache hotImageCache;
+
+    @BeforeEach
+    void setUp() {
+        HotImageCacheProperties properties = new HotImageCacheProperties();
+        properties.setMaxSize(DataSize.ofBytes(250));
+        properties.setMaxEntrySize(DataSize.ofBytes(150));
+        hotImageCache = new HotImageCache(properties, imageStorage, new SimpleMeterRegistry());
+    }
+
+    @Test
+    void get_shouldServeRepeatedRequestsFromMemory() throws IOException {
+        image("a.png", 100);
+
+        HotImageCache.CachedImage first = hotImageCache.get("a.png", null);
+        imageStorage.delete("a.png");
+        HotImageCache.CachedImage second = hotImageCache.get("a.png", null);
+
+        assertThat(second).isSameAs(first);
+        assertThat(second.contentType()).isEqualTo(MediaType.IMAGE_PNG);
+        try (InputStream inputStream = second.resource().getInputStream()) {
+            assertThat(inputStream.readAllBytes()).hasSize(100).startsWith(PNG_HEADER);
+        }
+        assertThat(hotImageCache.hitRatio()).isEqualTo(0.5);
+        assertThat(hotImageCache.residentBytes()).isEqualTo(100);
+    }
+
+    @Test
+    void get_shouldEvictLeastRecentlyUsedWhenOverBudget() throws IOException {
+        image("a.png", 100);
+        image("b.png", 100);
+        image("c.png", 100);
+        hotImageCache.get("a.png", null);
+        hotImageCache.get("b.png", null);
+        hotImageCache.get("a.png", null);
+        hotImageCache.get("c.png", null);
+
+        assertThat(hotImageCache.residentBytes()).isEqualTo(200);
+        assertThat(hotImageCache.peek("a.png")).isNotNull();
+        assertThat(hotImageCache.peek("b.png")).isNull();
+    }
+
+    @Test
+    void get_shouldStreamLargeImagesFromStorage() throws IOException {
+        image("large.png", 200);
+
+        HotImageCache.CachedImage image = hotImageCache.get("large.png", null);
+
+        assertThat(image.resource()).isInstanceOf(ByteArrayResource.class);
+        assertThat(image.contentType()).isEqualTo(MediaType.IMAGE_PNG);
+        assertThat(hotImageCache.residentBytes()).isZero();
+    }
+
+    @Test
+    void get_shouldNotCacheAnImageWhoseSizeChangedWhileReadingIt() throws IOException {
+        byte[] content = new byte[100];
+        System.arraycopy(PNG_HEADER, 0, content, 0, PNG_HEADER.length);
+
+        HotImageCache.CachedImage shorter = hotImageCache.get("short.png", new StoredImage(new ByteArrayResource(content), 120, 0));
+        HotImageCache.CachedImage longer = hotImageCache.get("long.png", new StoredImage(new ByteArrayResource(content), 80, 0));
+
+        assertThat(shorter.resource().contentLength()).isEqualTo(100);
+        assertThat(longer.resource().contentLength()).isEqualTo(100);
+        assertThat(hotImageCache.peek("short.png")).isNull();
+        assertThat(hotImageCache.peek("long.png")).isNull();
+        assertThat(hotImageCache.residentBytes()).isZero();
+    }
+
+    @Test
+    void get_shouldReuseTheCallerLookup() throws IOException {
+        image("a.png", 100);
+        ImageStorage storage = spy(imageStorage);
+        StoredImage stored = imageStorage.find("a.png");
+        HotImageCache cache = new HotImageCache(new HotImageCacheProperties(), storage, new SimpleMeterRegistry());
+
+        assertThat(cache.get("a.png", stored)).isNotNull();
+
+        verify(storage, times(0)).find("a.png");
+    }
+
+    @Test
+    void invalidate_shouldReleaseResidentBytes() throws IOException {
+        image("a.png", 100);
+        hotImageCache.get("a.png", null);
+
+        hotImageCache.invalidate("a.png");
+
+        assertThat(hotImageCache.residentBytes()).isZero();
+        assertThat(hotImageCache.get("missing.png", null)).isNull();
+    }
+
+    private void image(String name, int size) {
+        byte[] content = new byte[size];
+        System.arraycopy(PNG_HEADER, 0, content, 0, PNG_HEADER.length);
+        imageStorage.store(name, content);
+    }
+}
@@ -0,0 +1,95 @@
+package com.mick.chatopapi.image;
+
+import com.mick.chatopapi.configuration.ImageVariantProperties;
+import com.mick.chatopapi.image.storage.LocalImageStorage;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.CRC32;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ImageVariantGeneratorTest {
+
+    @TempDir
+    Path uploadDir;
+
+    private ImageVariantGenerator imageVariantGenerator;
+
+    @BeforeEach
+    void setUp() {
+        ImageVariantProperties properties = new ImageVariantProperties();
+        properties.setWorkers(1);
+        properties.setQueueCapacity(1);
+        properties.setMaxPixels(1_000_000);
+        imageVariantGenerator = new ImageVariantGenerator(properties, new LocalImageStorage(uploadDir));
+        ReflectionTestUtils.setField(imageVariantGenerator, "uploadDir", uploadDir.toString());
+    }
+
+    @AfterEach
+    void shutdown() {
+        imageVariantGenerator.shutdown();
+    }
+
+    @Test
+    void generate_shouldWriteDownscaledVariants() throws IOException {
+        ImageIO.write(new BufferedImage(1000, 500, BufferedImage.TYPE_INT_RGB), "png", uploadDir.resolve("abc.png").toFile());
+
+        imageVariantGenerator.generate("abc.png");
+
+        BufferedImage thumbnail = ImageIO.read(ImageLayout.locate(uploadDir, "abc_thumb.png").toFile());
+        BufferedImage medium = ImageIO.read(ImageLayout.locate(uploadDir, "abc_medium.png").toFile());
+        assertThat(thumbnail.getWidth()).isEqualTo(200);
+        assertThat(thumbnail.getHeight()).isEqualTo(100);
+        assertThat(medium.getWidth()).isEqualTo(800);
+    }
+
+    @Test
+    void generate_shouldSkipVariantsLargerThanOriginal() throws IOException {
+        ImageIO.write(new BufferedImage(300, 300, BufferedImage.TYPE_INT_RGB), "jpg", uploadDir.resolve("small.jpg").toFile());
+
+        imageVariantGenerator.generate("small.jpg");
+
+        assertThat(ImageLayout.locate(uploadDir, "small_thumb.jpg")).exists();
+        assertThat(ImageLayout.locate(uploadDir, "small_medium.jpg")).doesNotExist();
+    }
+
+    @Test
+    void generate_shouldNotDecodeImagesAboveThePixelLimit() throws IOException {
+        // A few dozen bytes declaring a 50000x50000 bitmap
+        Files.write(uploadDir.resolve("bomb.png"), pngHeader(50_000, 50_000));
+        ImageIO.write(new BufferedImage(2000, 1000, BufferedImage.TYPE_INT_RGB), "png", uploadDir.resolve("big.png").toFile());
+
+        imageVariantGenerator.generate("bomb.png");
+        imageVariantGenerator.generate("big.png");
+
+        assertThat(ImageLayout.locate(uploadDir, "bomb_thumb.png")).doesNotExist();
+        assertThat(ImageLayout.locate(uploadDir, "big_thumb.png")).doesNotExist();
+    }
+
+    private static byte[] pngHeader(int width, int height) {
+        ByteBuffer ihdr = ByteBuffer.allocate(17)
+                .put("IHDR".getBytes(StandardCharsets.US_ASCII))
+                .putInt(width)
+                .putInt(height)
+                .put(new byte[]{8, 2, 0, 0, 0});
+        CRC32 crc = new CRC32();
+        crc.update(ihdr.array());
+        return ByteBuffer.allocate(8 + 4 + 17 + 4)
+                .put(new byte[]{(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'})
+                .putInt(13)
+                .put(ihdr.array())
+                .putInt((int) crc.getValue())
+                .array();
+    }
+}
@@ -0,0 +1,183 @@
+package com.mick.chatopapi.image;
+
+import com.mick.chatopapi.configuration.OrphanImageCollectorProperties;
+import com.mick.chatopapi.image.storage.LocalImageStorage;
+import com.mick.chatopapi.dto.ImageRefCount;
+import com.mick.chatopapi.entity.RentalEntity;
+import com.mick.chatopapi.repository.ImageRepository;
+import com.mick.chatopapi.repository.RentalRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.data.domain.Limit;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class OrphanImageCollectorTest {
+
+    @TempDir
+    Path uploadDir;
+
+    private final RentalRepository rentalRepository = mock(RentalRepository.class);
+    private final ImageRepository imageRepository = mock(ImageRepository.class);
+    private final ContentAddressedImageStore contentAddressedImageStore = mock(ContentAddressedImageStore.class);
+    private final OrphanImageCollectorProperties properties = new OrphanImageCollectorProperties();
+
+    @BeforeEach
+    void setUp() {
+        properties.setGracePeriod(Duration.ofHours(1));
+        properties.setMaxDeletesPerSecond(1000);
+        pictures("http://localhost:3001/api/rentals/image/b.jpg", "https://example.com/external.jpg");
+    }
+
+    @Test
+    void collect_shouldPurgeOnlyOldUnreferencedImages() throws IOException {
+        when(contentAddressedImageStore.purgeIfUnreferenced("a.jpg", 0)).thenReturn(true);
+        file("a.jpg", 10, true);
+        file("b.jpg", 20, true);
+        file("b_thumb.jpg", 5, true);
+        file("c_thumb.jpg", 3, true);
+        file("d.jpg", 40, false);
+
+        long reclaimed = collector().collect();
+
+        assertThat(reclaimed).isEqualTo(13);
+        verify(contentAddressedImageStore).purgeIfUnreferenced("a.jpg", 0);
+        verify(contentAddressedImageStore, never()).purgeIfUnreferenced(eq("b.jpg"), anyInt());
+        verify(contentAddressedImageStore, never()).purgeIfUnreferenced(eq("d.jpg"), anyInt());
+        assertThat(uploadDir.resolve("b_thumb.jpg")).exists();
+        assertThat(uploadDir.resolve("c_thumb.jpg")).doesNotExist();
+    }
+
+    @Test
+    void collect_shouldOnlyReportInDryRun() throws IOException {
+        properties.setDryRun(true);
+        file("a.jpg", 10, true);
+        file("c_thumb.jpg", 3, true);
+
+        long reclaimed = collector().collect();
+
+        assertThat(reclaimed).isEqualTo(13);
+        verify(contentAddressedImageStore, never()).purgeIfUnreferenced(anyString(), anyInt());
+        assertThat(uploadDir.resolve("c_thumb.jpg")).exists();
+    }
+
+    @Test
+    void collect_shouldNotCountImagesReferencedAgainBeforeThePurge() throws IOException {
+        // A leaked reference seen when the collection started; the image is stored again meanwhile
+        when(imageRepository.findRefCounts(anyCollection())).thenReturn(List.of(new ImageRefCount("a.jpg", 1)));
+        when(contentAddressedImageStore.purgeIfUnreferenced("a.jpg", 1)).thenReturn(false);
+        file("a.jpg", 10, true);
+
+        long reclaimed = collector().collect();
+
+        assertThat(reclaimed).isZero();
+        verify(contentAddressedImageStore).purgeIfUnreferenced("a.jpg", 1);
+    }
+
+    @Test
+    void collect_shouldKeepLegacyImagesWhoseUrlIsEncoded() throws IOException {
+        String legacy = "1234abcd_Ma maison (2).jpg";
+        // The URL as the service builds it, percent-encoded
+        String picture = UriComponentsBuilder.fromUriString("http://localhost:3001")
+                .path("/api/rentals/image/").path(legacy).toUriString();
+        assertThat(picture).endsWith("/1234abcd_Ma%20maison%20(2).jpg");
+        pictures(picture);
+        file(legacy, 10, true);
+
+        long reclaimed = collector().collect();
+
+        assertThat(reclaimed).isZero();
+        verify(contentAddressedImageStore, never()).purgeIfUnreferenced(anyString(), anyInt());
+        assertThat(uploadDir.resolve(legacy)).exists();
+    }
+
+    @Test
+    void collect_shouldFillInThePictureFilenameOfOlderRentalsOnce() throws IOException {
+        RentalEntity rental = new RentalEntity("flat", 30.0, 500.0, "description");
+        rental.setPicture("http://localhost:3001/api/rentals/image/Ma%20maison.jpg");
+        // As loaded from a row saved before the column existed
+        ReflectionTestUtils.setField(rental, "picture_filename", null);
+        when(rentalRepository.findWithoutPictureFilenameAfter(eq(0), any(Limit.class))).thenReturn(List.of(rental));
+        OrphanImageCollector collector = collector();
+
+        collector.collect();
+        collector.collect();
+
+        assertThat(rental.getPicture_filename()).isEqualTo("Ma maison.jpg");
+        verify(rentalRepository, times(1)).findWithoutPictureFilenameAfter(anyInt(), any(Limit.class));
+    }
+
+    @Test
+    void filenameOf_shouldIgnoreExternalPictures() {
+        assertThat(ContentAddressedImageStore.filenameOf("http://host/api/rentals/image/abc.png")).isEqualTo("abc.png");
+        assertThat(ContentAddressedImageStore.filenameOf("https://example.com/house.jpg")).isNull();
+        assertThat(ContentAddressedImageStore.filenameOf("http://host/api/rentals/image/1234abcd_%C3%A9t%C3%A9.png?v=2"))
+                .isEqualTo("1234abcd_été.png");
+        assertThat(ContentAddressedImageStore.filenameOf("http://host/api/rentals/image/100%.png")).isNull();
+    }
+
+    @Test
+    void collect_shouldLookUpOneBatchAtATime() throws IOException {
+        properties.setBatchSize(2);
+        file("a.jpg", 10, true);
+        file("b.jpg", 20, true);
+        file("c.jpg", 30, true);
+
+        collector().collect();
+
+        verify(rentalRepository, times(2)).findPictureFilenamesIn(anyCollection());
+        verify(imageRepository, times(2)).findRefCounts(anyCollection());
+    }
+
+    private OrphanImageCollector collector() {
+        return new OrphanImageCollector(properties, rentalRepository, imageRepository, contentAddressedImageStore,
+                new LocalImageStorage(uploadDir), mock(PlatformTransactionManager.class), new SimpleMeterRegistry());
+    }
+
+    /**
+     * Rentals with these pictures, as the picture filename lookup sees them.
+     */
+    private void pictures(String... pictures) {
+        List<String> filenames = Stream.of(pictures)
+                .map(ContentAddressedImageStore::filenameOf)
+                .filter(Objects::nonNull)
+                .toList();
+        when(rentalRepository.findPictureFilenamesIn(anyCollection())).thenAnswer(invocation -> {
+            Collection<String> candidates = invocation.getArgument(0);
+            return filenames.stream().filter(candidates::contains).toList();
+        });
+    }
+
+    private void file(String name, int size, boolean old) throws IOException {
+        Path file = Files.write(uploadDir.resolve(name), new byte[size]);
+        if (old) {
+            Files.setLastModifiedTime(file, FileTime.from(Instant.now().minus(Duration.ofDays(2))));
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package com.mick.chatopapi.image.storage;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Runs the storage against a minimal in-process stand-in for an S3 bucket.
+ */
+class S3ImageStorageTest {
+
+    private static final byte[] JPEG = {(byte) 0xFF, (byte) 0xD8, (byte) 0xFF, (byte) 0xE0, 1, 2, 3, 4};
+
+    @TempDir
+    Path tempDir;
+
+    private final Map<String, byte[]> objects = new ConcurrentSkipListMap<>();
+    private final List<String> authorizations = new CopyOnWriteArrayList<>();
+    private HttpServer server;
+    private S3ImageStorage imageStorage;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/bucket", this::handle);
+        server.start();
+        imageStorage = new S3ImageStorage(URI.create("http://localhost:" + server.getAddress().getPort()),
+                "us-east-1", "bucket", "images/", "access", "secret");
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.stop(0);
+    }
+
+    @Test
+    void shouldStoreFindReadAndDeleteImages() throws IOException {
+        Path source = Files.write(tempDir.resolve("upload.tmp"), JPEG);
+
+        imageStorage.store("abc.jpg", source);
+        StoredImage stored = imageStorage.find("abc.jpg");
+
+        assertThat(objects).containsKey("images/abc.jpg");
+        assertThat(stored.size()).isEqualTo(JPEG.length);
+        assertThat(stored.lastModified()).isPositive();
+        try (InputStream inputStream = stored.resource().getInputStream()) {
+            assertThat(inputStream.readAllBytes()).isEqualTo(JPEG);
+        }
+        assertThat(authorizations).allMatch(value -> value.startsWith(
+                "AWS4-HMAC-SHA256 Credential=access/") && value.contains("Signature="));
+
+        imageStorage.delete("abc.jpg");
+        assertThat(imageStorage.find("abc.jpg")).isNull();
+    }
+
+    @Test
+    void list_shouldFollowContinuationTokens() throws IOException {
+        for (String name : List.of("a.jpg", "b.jpg", "c.jpg")) {
+            imageStorage.store(name, Files.write(tempDir.resolve(name), JPEG));
+        }
+
+        try (Stream<String> filenames = imageStorage.list()) {
+            assertThat(filenames).containsExactly("a.jpg", "b.jpg", "c.jpg");
+        }
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        authorizations.add(exchange.getRequestHeaders().getFirst("Authorization"));
+        String path = exchange.getRequestURI().getPath();
+        String key = path.length() > "/bucket/".length() ? path.substring("/bucket/".length()) : null;
+        switch (exchange.getRequestMethod()) {
+            case "PUT" -> {
+                try (InputStream body = exchange.getRequestBody()) {
+                    objects.put(key, body.readAllBytes());
+                }
+                respond(exchange, 200, new byte[0]);
+            }
+            case "HEAD" -> {
+                byte[] content = objects.get(key);
+                if (content == null) {
+                    exchange.sendResponseHeaders(404, -1);
+                } else {
+                    exchange.getResponseHeaders().add("Content-Length", String.valueOf(content.length));
+                    exchange.getResponseHeaders().add("Last-Modified",
+                            DateTimeFormatter.RFC_1123_DATE_TIME.format(ZonedDateTime.now(ZoneOffset.UTC)));
+                    exchange.sendResponseHeaders(200, -1);
+                }
+                exchange.close();
+            }
+            case "DELETE" -> {
+                objects.remove(key);
+                exchange.sendResponseHeaders(204, -1);
+                exchange.close();
+            }
+            default -> {
+                if (key != null) {
+                    byte[] content = objects.get(key);
+                    respond(exchange, content == null ? 404 : 200, content == null ? new byte[0] : content);
+                } else {
+                    respond(exchange, 200, listPage(exchange.getRequestURI().getQuery()));
+                }
+            }
+        }
+    }
+
+    /**
+     * Lists two keys per page, using the last returned key as the continuation token.
+     */
+    private byte[] listPage(String query) {
+        String after = "";
+        for (String parameter : query.split("&")) {
+            if (parameter.startsWith("continuation-token=")) {
+                after = URLDecoder.decode(parameter.substring("continuation-token=".length()), StandardCharsets.UTF_8);
+            }
+        }
+        List<String> keys = ((ConcurrentSkipListMap<String, byte[]>) objects).tailMap(after, false).keySet()
+                .stream().limit(2).toList();
+        StringBuilder xml = new StringBuilder("<ListBucketResult>");
+        keys.forEach(key -> xml.append("<Contents><Key>").append(key).append("</Key></Contents>"));
+        if (keys.size() == 2 && !objects.isEmpty() && !keys.get(1).equals(((ConcurrentSkipListMap<String, byte[]>) objects).lastKey())) {
+            xml.append("<NextContinuationToken>").append(keys.get(1)).append("</NextContinuationToken>");
+        }
+        return xml.append("</ListBucketResult>").toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static void respond(HttpExchange exchange, int status, byte[] body) throws IOException {
+        exchange.sendResponseHeaders(status, body.length == 0 ? -1 : body.length);
+        try (OutputStream outputStream = exchange.getResponseBody()) {
+            outputStream.write(body);
+        }
+    }
+}
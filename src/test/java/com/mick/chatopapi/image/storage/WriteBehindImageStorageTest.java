@@ -0,0 +1,67 @@
+package com.mick.chatopapi.image.storage;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.FileSystemResource;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class WriteBehindImageStorageTest {
+
+    @TempDir
+    Path tempDir;
+
+    private final InMemoryImageStorage delegate = new InMemoryImageStorage();
+    private WriteBehindImageStorage imageStorage;
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        imageStorage.stop();
+    }
+
+    @Test
+    void store_shouldServeStagedImageUntilItIsUploaded() throws IOException {
+        imageStorage = start();
+        Path source = Files.write(tempDir.resolve("upload.tmp"), new byte[]{1, 2, 3});
+
+        imageStorage.store("abc.jpg", source);
+
+        assertThat(imageStorage.find("abc.jpg")).isNotNull();
+        awaitUpload("abc.jpg");
+        assertThat(imageStorage.find("abc.jpg").resource()).isNotInstanceOf(FileSystemResource.class);
+    }
+
+    @Test
+    void start_shouldUploadImagesStagedBeforeARestart() throws IOException {
+        Files.createDirectories(tempDir.resolve("staging"));
+        Files.write(tempDir.resolve("staging").resolve("left-over.jpg"), new byte[]{1});
+
+        imageStorage = start();
+
+        awaitUpload("left-over.jpg");
+    }
+
+    private void awaitUpload(String filename) {
+        long deadline = System.currentTimeMillis() + 5000;
+        Path staged = tempDir.resolve("staging").resolve(filename);
+        while ((delegate.find(filename) == null || Files.exists(staged)) && System.currentTimeMillis() < deadline) {
+            Thread.onSpinWait();
+        }
+        assertThat(delegate.find(filename)).isNotNull();
+        assertThat(staged).doesNotExist();
+    }
+
+    private WriteBehindImageStorage start() throws IOException {
+        WriteBehindImageStorage storage = new WriteBehindImageStorage(delegate, tempDir.resolve("staging"), 1,
+                Duration.ofHours(1), new SimpleMeterRegistry());
+        storage.start();
+        return storage;
+    }
+}
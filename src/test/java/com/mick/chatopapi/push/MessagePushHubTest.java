@@ -0,0 +1,135 @@
+package com.mick.chatopapi.push;
+
+import com.mick.chatopapi.configuration.MessagePushProperties;
+import com.mick.chatopapi.configuration.MessagePushProperties.OverflowPolicy;
+import com.mick.chatopapi.dto.MessageEvent;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MessagePushHubTest {
+
+    private final MessagePushProperties properties = new MessagePushProperties();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final BlockingQueue<RecordingEmitter> emitters = new LinkedBlockingQueue<>();
+    private MessagePushHub hub;
+    private CountDownLatch releaseSends;
+
+    @BeforeEach
+    void setUp() {
+        properties.setBufferSize(2);
+        properties.setHeartbeatInterval(Duration.ofHours(1));
+        releaseSends = new CountDownLatch(0);
+        hub = new MessagePushHub(properties, meterRegistry) {
+            @Override
+            SseEmitter newEmitter(long timeoutMillis) {
+                RecordingEmitter emitter = new RecordingEmitter(releaseSends);
+                emitters.add(emitter);
+                return emitter;
+            }
+        };
+        hub.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        releaseSends.countDown();
+        hub.stop();
+    }
+
+    @Test
+    void publish_shouldOnlyReachTheOwnersSubscribers() throws InterruptedException {
+        hub.subscribe(1);
+        hub.subscribe(2);
+        RecordingEmitter ownerStream = emitters.take();
+        RecordingEmitter otherStream = emitters.take();
+
+        hub.publish(1, event("hello"));
+
+        assertThat(ownerStream.events.poll(5, TimeUnit.SECONDS)).isEqualTo(event("hello"));
+        assertThat(otherStream.events.poll(200, TimeUnit.MILLISECONDS)).isNull();
+    }
+
+    @Test
+    void publish_shouldDisconnectASlowSubscriberWhenItsBufferIsFull() throws InterruptedException {
+        releaseSends = new CountDownLatch(1);
+        properties.setOverflowPolicy(OverflowPolicy.DISCONNECT);
+        hub.subscribe(1);
+        RecordingEmitter stream = emitters.take();
+        assertThat(stream.sending.await(5, TimeUnit.SECONDS)).isTrue();
+
+        for (int i = 0; i < 3; i++) {
+            hub.publish(1, event("message " + i));
+        }
+
+        assertThat(stream.completed.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(hub.hasSubscribers()).isFalse();
+        assertThat(meterRegistry.counter("chatop.messages.push.slow.disconnects").count()).isEqualTo(1);
+    }
+
+    @Test
+    void publish_shouldDropTheOldestEventsWhenConfiguredTo() throws InterruptedException {
+        releaseSends = new CountDownLatch(1);
+        properties.setOverflowPolicy(OverflowPolicy.DROP_OLDEST);
+        hub.subscribe(1);
+        RecordingEmitter stream = emitters.take();
+        assertThat(stream.sending.await(5, TimeUnit.SECONDS)).isTrue();
+
+        for (int i = 0; i < 5; i++) {
+            hub.publish(1, event("message " + i));
+        }
+        releaseSends.countDown();
+
+        assertThat(stream.events.poll(5, TimeUnit.SECONDS)).isEqualTo(event("message 3"));
+        assertThat(stream.events.poll(5, TimeUnit.SECONDS)).isEqualTo(event("message 4"));
+        assertThat(hub.hasSubscribers()).isTrue();
+        assertThat(meterRegistry.counter("chatop.messages.push.dropped").count()).isEqualTo(3);
+    }
+
+    private static MessageEvent event(String message) {
+        return new MessageEvent(null, 10, 3, message, LocalDateTime.of(2024, 1, 1, 12, 0));
+    }
+
+    private static class RecordingEmitter extends SseEmitter {
+
+        private final CountDownLatch release;
+        private final CountDownLatch sending = new CountDownLatch(1);
+        private final CountDownLatch completed = new CountDownLatch(1);
+        private final BlockingQueue<MessageEvent> events = new LinkedBlockingQueue<>();
+
+        private RecordingEmitter(CountDownLatch release) {
+            this.release = release;
+        }
+
+        @Override
+        public void send(SseEventBuilder builder) {
+            sending.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            builder.build().stream()
+                    .map(DataWithMediaType::getData)
+                    .filter(MessageEvent.class::isInstance)
+                    .map(MessageEvent.class::cast)
+                    .forEach(events::add);
+        }
+
+        @Override
+        public void complete() {
+            completed.countDown();
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package com.mick.chatopapi.repository;
+
+import com.mick.chatopapi.dto.ConversationDto;
+import com.mick.chatopapi.dto.QueuedMessage;
+import com.mick.chatopapi.entity.MessageEntity;
+import com.mick.chatopapi.entity.RentalEntity;
+import com.mick.chatopapi.entity.UserEntity;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.Limit;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DataJpaTest
+@Import(ConversationBatchRepository.class)
+class ConversationBatchRepositoryTest {
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private ConversationBatchRepository conversationBatchRepository;
+
+    @Autowired
+    private ConversationRepository conversationRepository;
+
+    private LocalDateTime now;
+    private UserEntity owner;
+    private UserEntity tenant;
+    private UserEntity otherTenant;
+    private RentalEntity flat;
+    private RentalEntity house;
+
+    @BeforeEach
+    void setUp() {
+        now = LocalDateTime.now().withNano(0);
+        owner = persistUser("owner@test.com");
+        tenant = persistUser("tenant@test.com");
+        otherTenant = persistUser("other@test.com");
+        flat = persistRental("flat");
+        house = persistRental("house");
+        entityManager.flush();
+    }
+
+    @Test
+    void recordMessage_shouldKeepOneConversationPerRentalAndSender() {
+        conversationBatchRepository.recordMessage(flat.getId(), tenant.getId(), 1, now.minusMinutes(3));
+        conversationBatchRepository.recordMessage(flat.getId(), tenant.getId(), 2, now.minusMinutes(1));
+        conversationBatchRepository.recordMessage(house.getId(), tenant.getId(), 3, now.minusMinutes(2));
+        // A late write-behind batch must not move the conversation back in time
+        conversationBatchRepository.recordAll(
+                List.of(new QueuedMessage(flat.getId(), tenant.getId(), "late", now.minusMinutes(5))), List.of(4));
+
+        List<ConversationDto> inbox = conversationRepository.findLatestByOwner(owner.getId(), Limit.of(10));
+
+        assertThat(inbox).extracting(ConversationDto::rentalId).containsExactly(flat.getId(), house.getId());
+        ConversationDto flatConversation = inbox.get(0);
+        assertThat(flatConversation.lastMessageId()).isEqualTo(2);
+        assertThat(flatConversation.lastActivity()).isEqualTo(now.minusMinutes(1));
+        assertThat(flatConversation.messageCount()).isEqualTo(3);
+    }
+
+    @Test
+    void recordAll_shouldPointEachConversationAtItsLatestMessage() {
+        conversationBatchRepository.recordMessage(flat.getId(), tenant.getId(), 1, now.minusMinutes(5));
+        conversationBatchRepository.recordAll(List.of(
+                new QueuedMessage(flat.getId(), tenant.getId(), "second", now.minusMinutes(2)),
+                new QueuedMessage(house.getId(), tenant.getId(), "first", now.minusMinutes(3)),
+                new QueuedMessage(flat.getId(), tenant.getId(), "third", now.minusMinutes(2))), List.of(7, 8, 9));
+
+        List<ConversationDto> inbox = conversationRepository.findLatestByOwner(owner.getId(), Limit.of(10));
+
+        assertThat(inbox).extracting(ConversationDto::lastMessageId).containsExactly(9, 8);
+        assertThat(inbox).extracting(ConversationDto::messageCount).containsExactly(3L, 1L);
+    }
+
+    @Test
+    void findByOwnerBefore_shouldPageByLastActivity() {
+        conversationBatchRepository.recordMessage(flat.getId(), tenant.getId(), 1, now.minusMinutes(3));
+        conversationBatchRepository.recordMessage(flat.getId(), otherTenant.getId(), 2, now.minusMinutes(2));
+        conversationBatchRepository.recordMessage(house.getId(), tenant.getId(), 3, now.minusMinutes(1));
+
+        List<ConversationDto> firstPage = conversationRepository.findLatestByOwner(owner.getId(), Limit.of(2));
+        ConversationDto last = firstPage.get(firstPage.size() - 1);
+        List<ConversationDto> nextPage = conversationRepository.findByOwnerBefore(
+                owner.getId(), last.lastActivity(), last.id(), Limit.of(2));
+
+        assertThat(firstPage).extracting(ConversationDto::lastMessageId).containsExactly(3, 2);
+        assertThat(nextPage).extracting(ConversationDto::lastMessageId).containsExactly(1);
+    }
+
+    @Test
+    void seedIfEmpty_shouldBuildConversationsFromStoredMessages() {
+        persistMessage(flat, tenant, now.minusMinutes(2));
+        MessageEntity latest = persistMessage(flat, tenant, now.minusMinutes(1));
+        persistMessage(house, otherTenant, now.minusMinutes(3));
+        entityManager.flush();
+
+        assertThat(conversationBatchRepository.seedIfEmpty()).isTrue();
+
+        List<ConversationDto> inbox = conversationRepository.findLatestByOwner(owner.getId(), Limit.of(10));
+        assertThat(inbox).hasSize(2);
+        assertThat(inbox.get(0).lastMessageId()).isEqualTo(latest.getId());
+        assertThat(inbox.get(0).messageCount()).isEqualTo(2);
+        assertThat(conversationBatchRepository.seedIfEmpty()).isFalse();
+    }
+
+    private UserEntity persistUser(String email) {
+        UserEntity user = new UserEntity(email, email, "hash");
+        user.setCreated_at(now);
+        user.setUpdated_at(now);
+        return entityManager.persist(user);
+    }
+
+    private RentalEntity persistRental(String name) {
+        RentalEntity rental = new RentalEntity(name, 30.0, 500.0, "description");
+        rental.setPicture("picture.jpg");
+        rental.setOwner(owner);
+        rental.setCreated_at(now);
+        rental.setUpdated_at(now);
+        return entityManager.persist(rental);
+    }
+
+    private MessageEntity persistMessage(RentalEntity rental, UserEntity sender, LocalDateTime createdAt) {
+        MessageEntity message = new MessageEntity(rental, sender, "message");
+        message.setCreated_at(createdAt);
+        message.setUpdated_at(createdAt);
+        return entityManager.persist(message);
+    }
+}
@@ -0,0 +1,115 @@
+package com.mick.chatopapi.repository;
+
+import com.mick.chatopapi.dto.MessageDto;
+import com.mick.chatopapi.entity.MessageEntity;
+import com.mick.chatopapi.entity.RentalEntity;
+import com.mick.chatopapi.entity.UserEntity;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.data.domain.Limit;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.session_factory.statement_inspector="
+        + "com.mick.chatopapi.repository.MessageRepositoryTest$CapturingStatementInspector")
+class MessageRepositoryTest {
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private MessageRepository messageRepository;
+
+    private RentalEntity rental;
+
+    @BeforeEach
+    void setUp() {
+        LocalDateTime now = LocalDateTime.now().withNano(0);
+        UserEntity owner = persistUser("owner@test.com", now);
+        UserEntity tenant = persistUser("tenant@test.com", now);
+        rental = persistRental("flat", owner, now);
+        RentalEntity otherRental = persistRental("house", owner, now);
+        persistMessage(rental, tenant, "oldest", now.minusMinutes(2));
+        persistMessage(rental, owner, "same time, first", now.minusMinutes(1));
+        persistMessage(rental, tenant, "same time, second", now.minusMinutes(1));
+        persistMessage(rental, owner, "newest", now);
+        persistMessage(otherRental, tenant, "other rental", now.plusMinutes(1));
+        entityManager.flush();
+        entityManager.clear();
+        CapturingStatementInspector.STATEMENTS.clear();
+    }
+
+    @Test
+    void findLatestByRental_shouldReturnNewestFirst() {
+        List<MessageDto> messages = messageRepository.findLatestByRental(rental.getId(), Limit.of(3));
+
+        assertThat(messages).extracting(MessageDto::message)
+                .containsExactly("newest", "same time, second", "same time, first");
+    }
+
+    @Test
+    void findByRentalBefore_shouldContinueAfterTiesOnCreatedAt() {
+        List<MessageDto> firstPage = messageRepository.findLatestByRental(rental.getId(), Limit.of(2));
+        MessageDto last = firstPage.get(firstPage.size() - 1);
+
+        List<MessageDto> nextPage = messageRepository.findByRentalBefore(
+                rental.getId(), last.createdAt(), last.id(), Limit.of(2));
+
+        assertThat(nextPage).extracting(MessageDto::message).containsExactly("same time, first", "oldest");
+    }
+
+    @Test
+    void findLatestByRental_shouldNotJoinUsersOrRentals() {
+        messageRepository.findLatestByRental(rental.getId(), Limit.of(10));
+
+        assertThat(CapturingStatementInspector.STATEMENTS).hasSize(1);
+        assertThat(CapturingStatementInspector.STATEMENTS.get(0).toLowerCase())
+                .doesNotContain(" join ")
+                .doesNotContain("users")
+                .doesNotContain("rentals");
+    }
+
+    private UserEntity persistUser(String email, LocalDateTime now) {
+        UserEntity user = new UserEntity(email, email, "hash");
+        user.setCreated_at(now);
+        user.setUpdated_at(now);
+        return entityManager.persist(user);
+    }
+
+    private RentalEntity persistRental(String name, UserEntity owner, LocalDateTime createdAt) {
+        RentalEntity rental = new RentalEntity(name, 30.0, 500.0, "description");
+        rental.setPicture("picture.jpg");
+        rental.setOwner(owner);
+        rental.setCreated_at(createdAt);
+        rental.setUpdated_at(createdAt);
+        return entityManager.persist(rental);
+    }
+
+    private void persistMessage(RentalEntity rental, UserEntity user, String text, LocalDateTime createdAt) {
+        MessageEntity message = new MessageEntity(rental, user, text);
+        message.setCreated_at(createdAt);
+        message.setUpdated_at(createdAt);
+        entityManager.persist(message);
+    }
+
+    public static class CapturingStatementInspector implements StatementInspector {
+
+        static final List<String> STATEMENTS = new CopyOnWriteArrayList<>();
+
+        @Override
+        public String inspect(String sql) {
+            if (sql.toLowerCase().startsWith("select")) {
+                STATEMENTS.add(sql);
+            }
+            return sql;
+        }
+    }
+}
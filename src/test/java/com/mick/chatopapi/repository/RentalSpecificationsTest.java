@@ -0,0 +1,131 @@
+package com.mick.chatopapi.repository;
+
+import com.mick.chatopapi.dto.RentalSearchCriteria;
+import com.mick.chatopapi.dto.RentalSort;
+import com.mick.chatopapi.entity.RentalEntity;
+import com.mick.chatopapi.entity.UserEntity;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.regex.Pattern;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.session_factory.statement_inspector="
+        + "com.mick.chatopapi.repository.RentalSpecificationsTest$CapturingStatementInspector")
+class RentalSpecificationsTest {
+
+    private static final Pattern FUNCTION_ON_INDEXED_COLUMN =
+            Pattern.compile("\\w+\\(\\s*\\w+\\.(price|surface|owner_id|created_at)\\b");
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private RentalRepository rentalRepository;
+
+    private UserEntity owner;
+
+    @BeforeEach
+    void setUp() {
+        LocalDateTime now = LocalDateTime.now();
+        owner = persistUser("owner@test.com", now);
+        UserEntity otherOwner = persistUser("other@test.com", now);
+        persistRental("small", 20.0, 300.0, owner, now);
+        persistRental("medium", 50.0, 700.0, owner, now.plusMinutes(1));
+        persistRental("large", 120.0, 1500.0, otherOwner, now.plusMinutes(2));
+        entityManager.flush();
+        entityManager.clear();
+        CapturingStatementInspector.STATEMENTS.clear();
+    }
+
+    @Test
+    void matching_shouldFilterOnAllCriteria() {
+        RentalSearchCriteria criteria = new RentalSearchCriteria(250.0, 1000.0, 10.0, 60.0, owner.getId(), RentalSort.PRICE_DESC);
+
+        Page<RentalEntity> rentals = rentalRepository.findAll(RentalSpecifications.matching(criteria), PageRequest.of(0, 10));
+
+        assertThat(rentals.getContent()).extracting(RentalEntity::getName).containsExactly("medium", "small");
+    }
+
+    @Test
+    void matching_shouldKeepPredicatesIndexFriendly() {
+        RentalSearchCriteria criteria = new RentalSearchCriteria(250.0, 1000.0, 10.0, 60.0, owner.getId(), RentalSort.NEWEST);
+
+        rentalRepository.findAll(RentalSpecifications.matching(criteria), PageRequest.of(0, 10));
+
+        List<String> statements = CapturingStatementInspector.STATEMENTS;
+        assertThat(statements).isNotEmpty();
+        assertThat(statements).allSatisfy(sql -> {
+            String lowerSql = sql.toLowerCase();
+            String whereClause = lowerSql.substring(lowerSql.indexOf(" where "));
+            assertThat(whereClause).doesNotContainPattern(FUNCTION_ON_INDEXED_COLUMN);
+            assertThat(whereClause).doesNotContain(" like ");
+            assertThat(lowerSql).doesNotContain(" join ");
+        });
+    }
+
+    @Test
+    void matching_shouldOnlySortWhenNoFilterIsGiven() {
+        RentalSearchCriteria criteria = new RentalSearchCriteria(null, null, null, null, null, RentalSort.OLDEST);
+
+        List<RentalEntity> rentals = rentalRepository.findAll(RentalSpecifications.matching(criteria));
+
+        assertThat(rentals).extracting(RentalEntity::getName).containsExactly("small", "medium", "large");
+        assertThat(CapturingStatementInspector.STATEMENTS).allSatisfy(sql ->
+                assertThat(sql.toLowerCase()).doesNotContain(" where "));
+    }
+
+    @Test
+    void matching_shouldBreakTiesInTheSortDirection() {
+        persistRental("medium too", 60.0, 700.0, owner, LocalDateTime.now());
+        entityManager.flush();
+        entityManager.clear();
+
+        List<RentalEntity> descending = rentalRepository.findAll(RentalSpecifications.matching(
+                new RentalSearchCriteria(600.0, 800.0, null, null, null, RentalSort.PRICE_DESC)));
+        List<RentalEntity> ascending = rentalRepository.findAll(RentalSpecifications.matching(
+                new RentalSearchCriteria(600.0, 800.0, null, null, null, RentalSort.PRICE_ASC)));
+
+        assertThat(descending).extracting(RentalEntity::getName).containsExactly("medium too", "medium");
+        assertThat(ascending).extracting(RentalEntity::getName).containsExactly("medium", "medium too");
+    }
+
+    private UserEntity persistUser(String email, LocalDateTime now) {
+        UserEntity user = new UserEntity(email, email, "hash");
+        user.setCreated_at(now);
+        user.setUpdated_at(now);
+        return entityManager.persist(user);
+    }
+
+    private void persistRental(String name, Double surface, Double price, UserEntity owner, LocalDateTime createdAt) {
+        RentalEntity rental = new RentalEntity(name, surface, price, "description");
+        rental.setPicture("picture.jpg");
+        rental.setOwner(owner);
+        rental.setCreated_at(createdAt);
+        rental.setUpdated_at(createdAt);
+        entityManager.persist(rental);
+    }
+
+    public static class CapturingStatementInspector implements StatementInspector {
+
+        static final List<String> STATEMENTS = new CopyOnWriteArrayList<>();
+
+        @Override
+        public String inspect(String sql) {
+            if (sql.toLowerCase().startsWith("select")) {
+                STATEMENTS.add(sql);
+            }
+            return sql;
+        }
+    }
+}
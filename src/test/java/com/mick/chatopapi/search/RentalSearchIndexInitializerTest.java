@@ -0,0 +1,62 @@
+package com.mick.chatopapi.search;
+
+import com.mick.chatopapi.dto.RentalDto;
+import com.mick.chatopapi.repository.RentalRepository;
+import com.mick.chatopapi.service.RentalService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.data.domain.Limit;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class RentalSearchIndexInitializerTest {
+
+    @TempDir
+    Path indexDir;
+
+    private final RentalRepository rentalRepository = mock(RentalRepository.class);
+    private RentalSearchIndex rentalSearchIndex;
+    private RentalSearchIndexInitializer initializer;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        rentalSearchIndex = new RentalSearchIndex(indexDir.toString());
+        initializer = new RentalSearchIndexInitializer(rentalSearchIndex, mock(RentalService.class), rentalRepository);
+        ReflectionTestUtils.setField(initializer, "catchUpInterval", Duration.ofHours(1));
+        initializer.rebuildIndex();
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        initializer.stop();
+        rentalSearchIndex.close();
+    }
+
+    @Test
+    void catchUp_shouldIndexRentalsWrittenByOtherNodes() {
+        LocalDateTime updatedAt = LocalDateTime.now().plusSeconds(1);
+        RentalDto rental = new RentalDto(7, "Seaside apartment", 50.0, 500.0, "Bright flat", "picture.jpg", 1, updatedAt, updatedAt);
+        when(rentalRepository.findUpdatedAfter(any(LocalDateTime.class), eq(0), any(Limit.class))).thenReturn(List.of(rental));
+
+        assertThat(initializer.catchUp()).isEqualTo(1);
+        assertThat(rentalSearchIndex.search("seaside", 0, 10).ids()).containsExactly(7);
+
+        // The next pass starts again a little before the latest update seen
+        initializer.catchUp();
+        verify(rentalRepository).findUpdatedAfter(eq(updatedAt.minusMinutes(1)), eq(0), any(Limit.class));
+    }
+}
@@ -0,0 +1,107 @@
+package com.mick.chatopapi.search;
+
+import com.mick.chatopapi.dto.RentalDto;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RentalSearchIndexTest {
+
+    @TempDir
+    Path indexDir;
+
+    private RentalSearchIndex rentalSearchIndex;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        rentalSearchIndex = new RentalSearchIndex(indexDir.toString());
+        rentalSearchIndex.rebuild(consumer -> List.of(
+                rental(1, "Seaside apartment", "Bright flat with a view on the harbour"),
+                rental(2, "Mountain chalet", "Wooden chalet close to the seaside train"),
+                rental(3, "City loft", "Loft in the city centre")
+        ).forEach(consumer));
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        rentalSearchIndex.close();
+    }
+
+    @Test
+    void search_shouldRankNameMatchesFirst() {
+        RentalSearchIndex.SearchHits hits = rentalSearchIndex.search("seaside", 0, 10);
+
+        assertThat(hits.ids()).containsExactly(1, 2);
+        assertThat(hits.totalHits()).isEqualTo(2);
+    }
+
+    @Test
+    void search_shouldPaginate() {
+        RentalSearchIndex.SearchHits hits = rentalSearchIndex.search("seaside", 1, 10);
+
+        assertThat(hits.ids()).containsExactly(2);
+        assertThat(hits.totalHits()).isEqualTo(2);
+    }
+
+    @Test
+    void index_shouldReplaceExistingRental() {
+        rentalSearchIndex.index(rental(3, "City loft", "Loft with a rooftop terrace"));
+
+        assertThat(rentalSearchIndex.search("centre", 0, 10).ids()).isEmpty();
+        assertThat(rentalSearchIndex.search("rooftop", 0, 10).ids()).containsExactly(3);
+    }
+
+    @Test
+    void search_shouldReturnNothingForAnOffsetPastTheIndex() {
+        RentalSearchIndex.SearchHits hits = rentalSearchIndex.search("seaside", Integer.MAX_VALUE - 5, 100);
+
+        assertThat(hits.ids()).isEmpty();
+        assertThat(hits.totalHits()).isEqualTo(2);
+    }
+
+    @Test
+    void index_shouldWaitForARebuildInProgress() throws InterruptedException {
+        CountDownLatch rebuildStarted = new CountDownLatch(1);
+        CountDownLatch resumeRebuild = new CountDownLatch(1);
+        Thread rebuild = Thread.ofVirtual().start(() -> rentalSearchIndex.rebuild(consumer -> {
+            consumer.accept(rental(1, "Seaside apartment", "Bright flat"));
+            rebuildStarted.countDown();
+            await(resumeRebuild);
+            consumer.accept(rental(4, "Seaside cabin", "Old description"));
+        }));
+        rebuildStarted.await();
+
+        Thread save = Thread.ofVirtual().start(() -> rentalSearchIndex.index(rental(4, "Seaside cabin", "New description")));
+        assertThat(save.join(Duration.ofMillis(200))).isFalse();
+        resumeRebuild.countDown();
+        rebuild.join();
+        save.join();
+
+        RentalSearchIndex.SearchHits hits = rentalSearchIndex.search("seaside", 0, 10);
+        assertThat(hits.ids()).containsExactlyInAnyOrder(1, 4);
+        assertThat(rentalSearchIndex.search("new", 0, 10).ids()).containsExactly(4);
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private RentalDto rental(Integer id, String name, String description) {
+        LocalDateTime now = LocalDateTime.now();
+        return new RentalDto(id, name, 50.0, 500.0, description, "picture.jpg", 1, now, now);
+    }
+}
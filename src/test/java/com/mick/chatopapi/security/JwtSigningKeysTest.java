@@ -0,0 +1,151 @@
+package com.mick.chatopapi.security;
+
+import com.mick.chatopapi.configuration.JwtCacheProperties;
+import com.mick.chatopapi.configuration.JwtSigningProperties;
+import com.mick.chatopapi.configuration.SecurityConfiguration;
+import com.mick.chatopapi.entity.JwtPublicKeyEntity;
+import com.mick.chatopapi.repository.JwtPublicKeyRepository;
+import com.nimbusds.jose.jwk.JWK;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.RSAKey;
+import com.nimbusds.jose.jwk.source.ImmutableJWKSet;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.security.authentication.TestingAuthenticationToken;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtClaimsSet;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.security.oauth2.jwt.JwtEncoderParameters;
+import org.springframework.security.oauth2.jwt.JwtException;
+import org.springframework.security.oauth2.jwt.NimbusJwtEncoder;
+
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.NoSuchAlgorithmException;
+import java.security.interfaces.RSAPrivateKey;
+import java.security.interfaces.RSAPublicKey;
+import java.time.Instant;
+import java.time.LocalDateTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@DataJpaTest
+class JwtSigningKeysTest {
+
+    private static KeyPair rsaKeyPair;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private JwtPublicKeyRepository jwtPublicKeyRepository;
+
+    private final JwtSigningProperties properties = new JwtSigningProperties();
+    private final SecurityConfiguration securityConfiguration = new SecurityConfiguration();
+    private JwtSigningKeys signingKeys;
+    private JwtService jwtService;
+    private JwtDecoder decoder;
+
+    @BeforeAll
+    static void createRsaKey() throws NoSuchAlgorithmException {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+        generator.initialize(2048);
+        rsaKeyPair = generator.generateKeyPair();
+    }
+
+    @BeforeEach
+    void setUp() {
+        signingKeys = newNode();
+        jwtService = new JwtService(securityConfiguration.jwtEncoder(signingKeys), signingKeys);
+        decoder = decoderOf(signingKeys);
+    }
+
+    @Test
+    void rotate_shouldKeepVerifyingTokensSignedWithThePreviousKey() {
+        signingKeys.rotate();
+        String before = jwtService.generateToken(user());
+        signingKeys.rotate();
+        String after = jwtService.generateToken(user());
+
+        Jwt beforeJwt = decoder.decode(before);
+        Jwt afterJwt = decoder.decode(after);
+
+        assertThat(beforeJwt.getHeaders()).containsEntry("alg", "ES256");
+        assertThat(beforeJwt.getHeaders().get("kid")).isNotEqualTo(afterJwt.getHeaders().get("kid"));
+        assertThat(afterJwt.getSubject()).isEqualTo("user@test.com");
+    }
+
+    @Test
+    void decode_shouldLoadTheKeysRotatedToByAnotherNode() {
+        JwtSigningKeys otherNode = newNode();
+        JwtService otherJwtService = new JwtService(securityConfiguration.jwtEncoder(otherNode), otherNode);
+        otherNode.rotate();
+
+        Jwt jwt = decoder.decode(otherJwtService.generateToken(user()));
+
+        assertThat(jwt.getHeaders()).containsEntry("kid", otherNode.signingKey().getKeyID());
+    }
+
+    @Test
+    void decode_shouldRejectTokensSignedWithAKeyPastItsRetention() {
+        signingKeys.rotate();
+        String token = jwtService.generateToken(user());
+        JwtPublicKeyEntity expired = jwtPublicKeyRepository.findById(signingKeys.signingKey().getKeyID()).orElseThrow();
+        expired.setExpires_at(LocalDateTime.now().minusMinutes(1));
+        entityManager.flush();
+
+        signingKeys.refresh();
+
+        assertThatThrownBy(() -> decoder.decode(token)).isInstanceOf(JwtException.class);
+        assertThat(jwtPublicKeyRepository.count()).isZero();
+    }
+
+    @Test
+    void decode_shouldAcceptKeystoreTokensIssuedWithoutKid() {
+        signingKeys.rotate();
+        RSAKey rsaKey = new RSAKey.Builder((RSAPublicKey) rsaKeyPair.getPublic())
+                .privateKey((RSAPrivateKey) rsaKeyPair.getPrivate())
+                .build();
+        JwtClaimsSet claims = JwtClaimsSet.builder()
+                .subject("user@test.com")
+                .issuedAt(Instant.now())
+                .expiresAt(Instant.now().plus(JwtService.TOKEN_LIFETIME))
+                .build();
+        String token = new NimbusJwtEncoder(new ImmutableJWKSet<>(new JWKSet(rsaKey)))
+                .encode(JwtEncoderParameters.from(claims))
+                .getTokenValue();
+
+        assertThat(decoder.decode(token).getSubject()).isEqualTo("user@test.com");
+    }
+
+    @Test
+    void publicKeys_shouldListEveryValidKeyWithoutPrivateParts() {
+        signingKeys.rotate();
+        signingKeys.rotate();
+
+        JWKSet publicKeys = signingKeys.publicKeys();
+
+        assertThat(publicKeys.getKeys()).hasSize(3).noneMatch(JWK::isPrivate);
+        assertThat(publicKeys.getKeyByKeyId(signingKeys.signingKey().getKeyID())).isNotNull();
+    }
+
+    private JwtSigningKeys newNode() {
+        return new JwtSigningKeys(properties, jwtPublicKeyRepository, rsaKeyPair.getPrivate(), rsaKeyPair.getPublic());
+    }
+
+    private JwtDecoder decoderOf(JwtSigningKeys keys) {
+        JwtCacheProperties cacheProperties = new JwtCacheProperties();
+        cacheProperties.setEnabled(false);
+        return securityConfiguration.jwtDecoder(keys, cacheProperties, new SimpleMeterRegistry());
+    }
+
+    private static TestingAuthenticationToken user() {
+        return new TestingAuthenticationToken("user@test.com", null);
+    }
+}
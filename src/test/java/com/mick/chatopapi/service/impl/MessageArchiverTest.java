@@ -0,0 +1,150 @@
+package com.mick.chatopapi.service.impl;
+
+import com.mick.chatopapi.configuration.MessageArchiveProperties;
+import com.mick.chatopapi.dto.MessageDto;
+import com.mick.chatopapi.dto.MessagesPageResponse;
+import com.mick.chatopapi.entity.MessageEntity;
+import com.mick.chatopapi.entity.RentalEntity;
+import com.mick.chatopapi.entity.UserEntity;
+import com.mick.chatopapi.mapper.MessageMapper;
+import com.mick.chatopapi.push.MessagePushHub;
+import com.mick.chatopapi.repository.ArchivedMessageRepository;
+import com.mick.chatopapi.repository.ConversationBatchRepository;
+import com.mick.chatopapi.repository.MessageBatchRepository;
+import com.mick.chatopapi.repository.MessageRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DataJpaTest(properties = {
+        "chatop.messages.archive.enabled=false",
+        "chatop.messages.archive.age=30d",
+        "chatop.messages.archive.chunk-size=2",
+        "chatop.messages.archive.chunk-pause=0ms"
+})
+@Import({MessageArchiver.class, MessageBatchRepository.class, MessageServiceImpl.class, MessageMapper.class,
+        SimpleMeterRegistry.class})
+@EnableConfigurationProperties(MessageArchiveProperties.class)
+class MessageArchiverTest {
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private MessageArchiver messageArchiver;
+
+    @Autowired
+    private MessageServiceImpl messageService;
+
+    @Autowired
+    private MessageBatchRepository messageBatchRepository;
+
+    @Autowired
+    private MessageRepository messageRepository;
+
+    @Autowired
+    private ArchivedMessageRepository archivedMessageRepository;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @MockitoBean
+    private MessageWriteBehindQueue messageWriteBehindQueue;
+
+    @MockitoBean
+    private MessagePushHub messagePushHub;
+
+    @MockitoBean
+    private MessageCounters messageCounters;
+
+    @MockitoBean
+    private ConversationBatchRepository conversationBatchRepository;
+
+    private RentalEntity rental;
+
+    @BeforeEach
+    void setUp() {
+        LocalDateTime now = LocalDateTime.now().withNano(0);
+        UserEntity owner = persistUser("owner@test.com", now);
+        UserEntity tenant = persistUser("tenant@test.com", now);
+        rental = new RentalEntity("flat", 30.0, 500.0, "description");
+        rental.setPicture("picture.jpg");
+        rental.setOwner(owner);
+        rental.setCreated_at(now);
+        rental.setUpdated_at(now);
+        entityManager.persist(rental);
+        persistMessage(tenant, "old 1", now.minusDays(42));
+        persistMessage(tenant, "old 2", now.minusDays(41));
+        persistMessage(owner, "old 3", now.minusDays(40));
+        persistMessage(tenant, "recent", now.minusDays(1));
+        entityManager.flush();
+        entityManager.clear();
+    }
+
+    @Test
+    void archive_shouldMoveOldMessagesInChunks() {
+        // The registry is shared by every test running in this context
+        double movedBefore = meterRegistry.counter("chatop.messages.archive.moved").count();
+        long runsBefore = meterRegistry.timer("chatop.messages.archive.run").count();
+
+        long moved = messageArchiver.archive();
+
+        assertThat(moved).isEqualTo(3);
+        assertThat(messageRepository.count()).isEqualTo(1);
+        assertThat(archivedMessageRepository.count()).isEqualTo(3);
+        assertThat(meterRegistry.counter("chatop.messages.archive.moved").count()).isEqualTo(movedBefore + 3);
+        assertThat(meterRegistry.timer("chatop.messages.archive.run").count()).isEqualTo(runsBefore + 1);
+    }
+
+    @Test
+    void getRentalMessages_shouldContinueIntoTheArchivePastTheHotMessages() {
+        messageArchiver.archive();
+        entityManager.clear();
+
+        MessagesPageResponse firstPage = messageService.getRentalMessages(rental.getId(), 2, null);
+        MessagesPageResponse secondPage = messageService.getRentalMessages(rental.getId(), 2, firstPage.nextCursor());
+
+        assertThat(firstPage.messages()).extracting(MessageDto::message).containsExactly("recent", "old 3");
+        assertThat(firstPage.nextCursor()).isNotNull();
+        assertThat(secondPage.messages()).extracting(MessageDto::message).containsExactly("old 2", "old 1");
+        assertThat(secondPage.nextCursor()).isNull();
+    }
+
+    @Test
+    void getRentalMessages_shouldFindMessagesArchivedByAnotherNode() {
+        // Moved without this node's archiver, as another node would
+        List<Integer> ids = messageBatchRepository.findIdsCreatedBefore(LocalDateTime.now().minusDays(30), 10);
+        messageBatchRepository.moveToArchive(ids);
+        entityManager.clear();
+
+        MessagesPageResponse page = messageService.getRentalMessages(rental.getId(), 10, null);
+
+        assertThat(page.messages()).extracting(MessageDto::message).containsExactly("recent", "old 3", "old 2", "old 1");
+    }
+
+    private UserEntity persistUser(String email, LocalDateTime now) {
+        UserEntity user = new UserEntity(email, email, "hash");
+        user.setCreated_at(now);
+        user.setUpdated_at(now);
+        return entityManager.persist(user);
+    }
+
+    private void persistMessage(UserEntity user, String text, LocalDateTime createdAt) {
+        MessageEntity message = new MessageEntity(rental, user, text);
+        message.setCreated_at(createdAt);
+        message.setUpdated_at(createdAt);
+        entityManager.persist(message);
+    }
+}
@@ -0,0 +1,110 @@
+package com.mick.chatopapi.service.impl;
+
+import com.mick.chatopapi.configuration.MessageCounterProperties;
+import com.mick.chatopapi.entity.MessageEntity;
+import com.mick.chatopapi.entity.RentalEntity;
+import com.mick.chatopapi.entity.UserEntity;
+import com.mick.chatopapi.repository.MessageCounterRepository;
+import com.mick.chatopapi.repository.MessageCounterRepository.CounterKey;
+import com.mick.chatopapi.repository.MessageCounterRepository.CounterType;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DataJpaTest
+@Import(MessageCounterRepository.class)
+class MessageCountersTest {
+
+    private static final int RENTAL_ID = 11;
+    private static final int OWNER_ID = 7;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private MessageCounterRepository messageCounterRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private final MessageCounterProperties properties = new MessageCounterProperties();
+    private MessageCounters messageCounters;
+
+    @BeforeEach
+    void setUp() {
+        properties.setRefreshInterval(Duration.ofHours(1));
+        messageCounters = new MessageCounters(properties, messageCounterRepository, transactionManager);
+    }
+
+    @Test
+    void counts_shouldIncludeIncrementsBeforeAndAfterTheyAreFlushed() {
+        messageCounters.increment(RENTAL_ID, OWNER_ID);
+        messageCounters.increment(RENTAL_ID, OWNER_ID);
+        assertThat(messageCounters.counts(CounterType.RENTAL, List.of(RENTAL_ID))).containsEntry(RENTAL_ID, 2L);
+
+        messageCounters.flush();
+        messageCounters.increment(RENTAL_ID, OWNER_ID);
+
+        assertThat(messageCounters.counts(CounterType.RENTAL, List.of(RENTAL_ID))).containsEntry(RENTAL_ID, 3L);
+        assertThat(messageCounters.ownerCount(OWNER_ID)).isEqualTo(3);
+        assertThat(messageCounterRepository.findCounts(CounterType.RENTAL, List.of(RENTAL_ID)))
+                .containsEntry(RENTAL_ID, 2L);
+
+        messageCounters.flush();
+        assertThat(messageCounterRepository.findCounts(CounterType.OWNER, List.of(OWNER_ID)))
+                .containsEntry(OWNER_ID, 3L);
+    }
+
+    @Test
+    void flush_shouldRefreshCountsWrittenByOtherNodes() {
+        properties.setRefreshInterval(Duration.ZERO);
+        messageCounters.increment(RENTAL_ID, OWNER_ID);
+        messageCounters.flush();
+
+        messageCounterRepository.addAll(Map.of(new CounterKey(CounterType.RENTAL, RENTAL_ID), 5L));
+        assertThat(messageCounters.counts(CounterType.RENTAL, List.of(RENTAL_ID))).containsEntry(RENTAL_ID, 1L);
+
+        messageCounters.flush();
+
+        assertThat(messageCounters.counts(CounterType.RENTAL, List.of(RENTAL_ID))).containsEntry(RENTAL_ID, 6L);
+    }
+
+    @Test
+    void seedIfEmpty_shouldCountTheStoredMessages() {
+        LocalDateTime now = LocalDateTime.now();
+        UserEntity owner = new UserEntity("owner@test.com", "owner", "hash");
+        owner.setCreated_at(now);
+        owner.setUpdated_at(now);
+        entityManager.persist(owner);
+        RentalEntity rental = new RentalEntity("flat", 30.0, 500.0, "description");
+        rental.setPicture("picture.jpg");
+        rental.setOwner(owner);
+        rental.setCreated_at(now);
+        rental.setUpdated_at(now);
+        entityManager.persist(rental);
+        for (int i = 0; i < 3; i++) {
+            MessageEntity message = new MessageEntity(rental, owner, "message " + i);
+            message.setCreated_at(now);
+            message.setUpdated_at(now);
+            entityManager.persist(message);
+        }
+        entityManager.flush();
+
+        assertThat(messageCounterRepository.seedIfEmpty()).isTrue();
+
+        assertThat(messageCounters.counts(CounterType.RENTAL, List.of(rental.getId()))).containsEntry(rental.getId(), 3L);
+        assertThat(messageCounters.ownerCount(owner.getId())).isEqualTo(3);
+        assertThat(messageCounterRepository.seedIfEmpty()).isFalse();
+    }
+}
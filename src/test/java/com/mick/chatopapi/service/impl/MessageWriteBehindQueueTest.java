@@ -0,0 +1,87 @@
+package com.mick.chatopapi.service.impl;
+
+import com.mick.chatopapi.configuration.MessageWriteBehindProperties;
+import com.mick.chatopapi.dto.QueuedMessage;
+import com.mick.chatopapi.exception.MessageQueueFullException;
+import com.mick.chatopapi.repository.ConversationBatchRepository;
+import com.mick.chatopapi.repository.MessageBatchRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+
+class MessageWriteBehindQueueTest {
+
+    private final MessageBatchRepository messageBatchRepository = mock(MessageBatchRepository.class);
+    private final MessageWriteBehindProperties properties = new MessageWriteBehindProperties();
+    private MessageWriteBehindQueue queue;
+
+    @BeforeEach
+    void setUp() {
+        properties.setEnabled(true);
+        properties.setQueueCapacity(3);
+        properties.setFlushSize(2);
+        properties.setFlushInterval(Duration.ofHours(1));
+        queue = new MessageWriteBehindQueue(properties, messageBatchRepository, mock(ConversationBatchRepository.class),
+                mock(PlatformTransactionManager.class), new SimpleMeterRegistry());
+        queue.start();
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        queue.stop();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void enqueue_shouldFlushAsSoonAsABatchIsFull() {
+        queue.enqueue(message("first"));
+        verify(messageBatchRepository, never()).insertAll(anyList());
+
+        queue.enqueue(message("second"));
+
+        ArgumentCaptor<List<QueuedMessage>> batch = ArgumentCaptor.forClass(List.class);
+        verify(messageBatchRepository, timeout(1000)).insertAll(batch.capture());
+        assertThat(batch.getValue()).extracting(QueuedMessage::message).containsExactly("first", "second");
+    }
+
+    @Test
+    void enqueue_shouldRejectWhenQueueIsFull() {
+        properties.setFlushSize(10);
+
+        queue.enqueue(message("1"));
+        queue.enqueue(message("2"));
+        queue.enqueue(message("3"));
+
+        assertThatThrownBy(() -> queue.enqueue(message("4")))
+                .isInstanceOf(MessageQueueFullException.class)
+                .extracting("retryAfterSeconds").isEqualTo(3600L);
+    }
+
+    @Test
+    void stop_shouldFlushPendingMessages() throws InterruptedException {
+        queue.enqueue(message("pending"));
+
+        queue.stop();
+
+        verify(messageBatchRepository).insertAll(List.of(message("pending")));
+    }
+
+    private QueuedMessage message(String text) {
+        return new QueuedMessage(1, 2, text, LocalDateTime.of(2024, 1, 1, 12, 0));
+    }
+}
@@ -0,0 +1,139 @@
+package com.mick.chatopapi.service.impl;
+
+import com.mick.chatopapi.dto.RentalImportError;
+import com.mick.chatopapi.dto.RentalImportResponse;
+import com.mick.chatopapi.entity.ImageEntity;
+import com.mick.chatopapi.entity.RentalEntity;
+import com.mick.chatopapi.entity.UserEntity;
+import com.mick.chatopapi.repository.RentalBatchRepository;
+import com.mick.chatopapi.repository.RentalRepository;
+import com.mick.chatopapi.search.RentalSearchIndex;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.autoconfigure.validation.ValidationAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@DataJpaTest(properties = "chatop.rentals.import.batch-size=2")
+@Import({RentalImporter.class, RentalBatchRepository.class})
+@ImportAutoConfiguration({JacksonAutoConfiguration.class, ValidationAutoConfiguration.class})
+class RentalImporterTest {
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private RentalImporter rentalImporter;
+
+    @Autowired
+    private RentalRepository rentalRepository;
+
+    @MockitoBean
+    private RentalSearchIndex rentalSearchIndex;
+
+    private Integer ownerId;
+
+    @BeforeEach
+    void setUp() {
+        UserEntity owner = new UserEntity("agency@test.com", "agency", "hash");
+        owner.setCreated_at(LocalDateTime.now());
+        owner.setUpdated_at(LocalDateTime.now());
+        ownerId = entityManager.persistAndFlush(owner).getId();
+    }
+
+    @Test
+    void importRentals_shouldInsertJsonRowsInBatchesAndReportInvalidRows() throws IOException {
+        String json = """
+                [
+                  {"name": "one", "surface": 20, "price": 100, "description": "first", "picture": "one.jpg"},
+                  {"name": "two", "surface": 30, "price": 200, "description": "second", "picture": "two.jpg"},
+                  {"name": "", "surface": 40, "price": 300, "description": "third", "picture": "three.jpg"},
+                  {"name": "four", "surface": "large", "price": 400, "description": "fourth", "picture": "four.jpg"},
+                  {"name": "five", "surface": 50, "price": 500, "description": "fifth", "picture": "five.jpg"}
+                ]
+                """;
+
+        RentalImportResponse response = rentalImporter.importRentals(stream(json), false, ownerId);
+
+        assertThat(response.imported()).isEqualTo(3);
+        assertThat(response.failed()).isEqualTo(2);
+        assertThat(response.errors()).extracting(RentalImportError::row).containsExactly(3L, 4L);
+        assertThat(rentalRepository.count()).isEqualTo(3);
+        verify(rentalSearchIndex, times(2)).indexAll(anyList());
+    }
+
+    @Test
+    void importRentals_shouldInsertCsvRows() throws IOException {
+        String csv = """
+                name,surface,price,description,picture
+                one,20,100,"first, with a comma",one.jpg
+                two,30,,second,two.jpg
+                three,40,300,third,three.jpg
+                """;
+
+        RentalImportResponse response = rentalImporter.importRentals(stream(csv), true, ownerId);
+
+        assertThat(response.imported()).isEqualTo(2);
+        assertThat(response.errors()).containsExactly(new RentalImportError(2, "The price field is required."));
+        assertThat(rentalRepository.findAll()).extracting(RentalEntity::getDescription)
+                .containsExactlyInAnyOrder("first, with a comma", "third");
+    }
+
+    @Test
+    void importRentals_shouldReferenceStoredImagesAndRejectUnusablePictures() throws IOException {
+        entityManager.persistAndFlush(new ImageEntity("abc.jpg", "abc", 10L));
+        String json = """
+                [
+                  {"name": "one", "surface": 20, "price": 100, "description": "first", "picture": "http://localhost:3001/api/rentals/image/abc.jpg"},
+                  {"name": "two", "surface": 30, "price": 200, "description": "second", "picture": "http://localhost:3001/api/rentals/image/missing.jpg"},
+                  {"name": "three", "surface": 40, "price": 300, "description": "third", "picture": "my house.jpg"}
+                ]
+                """;
+
+        RentalImportResponse response = rentalImporter.importRentals(stream(json), false, ownerId);
+
+        assertThat(response.imported()).isEqualTo(1);
+        assertThat(response.errors()).containsExactly(
+                new RentalImportError(2, "The picture points to an unknown image: missing.jpg"),
+                new RentalImportError(3, "The picture must be a valid URL."));
+        entityManager.clear();
+        assertThat(entityManager.find(ImageEntity.class, "abc.jpg").getRef_count()).isEqualTo(2);
+    }
+
+    @Test
+    void importRentals_shouldAcceptAnEncodedPictureUrl() throws IOException {
+        entityManager.persistAndFlush(new ImageEntity("0b5f1c2e_Ma maison.jpg", "0b5f1c2e", 10L));
+        String json = """
+                [
+                  {"name": "one", "surface": 20, "price": 100, "description": "first", "picture": "http://localhost:3001/api/rentals/image/0b5f1c2e_Ma%20maison.jpg"}
+                ]
+                """;
+
+        RentalImportResponse response = rentalImporter.importRentals(stream(json), false, ownerId);
+
+        assertThat(response.imported()).isEqualTo(1);
+        assertThat(response.errors()).isEmpty();
+        entityManager.clear();
+        assertThat(entityManager.find(ImageEntity.class, "0b5f1c2e_Ma maison.jpg").getRef_count()).isEqualTo(2);
+    }
+
+    private InputStream stream(String body) {
+        return new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,115 @@
+package com.mick.chatopapi.service.impl;
+
+import com.mick.chatopapi.configuration.CacheConfiguration;
+import com.mick.chatopapi.configuration.RentalCacheProperties;
+import com.mick.chatopapi.dto.RentalDto;
+import com.mick.chatopapi.dto.UpdateRentalDto;
+import com.mick.chatopapi.entity.RentalEntity;
+import com.mick.chatopapi.entity.UserEntity;
+import com.mick.chatopapi.image.ContentAddressedImageStore;
+import com.mick.chatopapi.mapper.RentalMapper;
+import com.mick.chatopapi.search.RentalSearchIndex;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+import java.time.LocalDateTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DataJpaTest(properties = {
+        "spring.jpa.properties.hibernate.generate_statistics=true",
+        "chatop.search.index-dir=target/test-search-index-cache"
+})
+@Import({RentalServiceImpl.class, RentalMapper.class, RentalSearchIndex.class,
+        CacheConfiguration.class, RentalCacheProperties.class})
+class RentalServiceImplCacheTest {
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private RentalServiceImpl rentalService;
+
+    @MockitoBean
+    private RentalImporter rentalImporter;
+
+    @MockitoBean
+    private ContentAddressedImageStore contentAddressedImageStore;
+
+    private Statistics statistics;
+    private Integer rentalId;
+
+    @BeforeEach
+    void setUp() {
+        LocalDateTime now = LocalDateTime.now();
+        UserEntity owner = new UserEntity("owner@test.com", "owner", "hash");
+        owner.setCreated_at(now);
+        owner.setUpdated_at(now);
+        entityManager.persist(owner);
+
+        RentalEntity rental = new RentalEntity("flat", 30.0, 500.0, "description");
+        rental.setPicture("picture.jpg");
+        rental.setOwner(owner);
+        rental.setCreated_at(now);
+        rental.setUpdated_at(now);
+        rentalId = entityManager.persist(rental).getId();
+        entityManager.flush();
+        entityManager.clear();
+
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+    }
+
+    @Test
+    void getRentalById_shouldServeRepeatedReadsFromTheCache() {
+        RentalDto first = rentalService.getRentalById(rentalId);
+        RentalDto second = rentalService.getRentalById(rentalId);
+
+        assertThat(second).isEqualTo(first);
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+    }
+
+    @Test
+    void updateRental_shouldEvictTheCachedRental() {
+        RentalDto before = rentalService.getRentalById(rentalId);
+
+        rentalService.updateRental(rentalId, new UpdateRentalDto(rentalId, "house", 80.0, 900.0, null, "bigger", null));
+        entityManager.flush();
+        entityManager.clear();
+
+        RentalDto after = rentalService.getRentalById(rentalId);
+        assertThat(after.name()).isEqualTo("house");
+        assertThat(after.updatedAt()).isAfter(before.updatedAt());
+    }
+
+    @Test
+    void getRentalsVersion_shouldFollowTheDataWhicheverNodeWroteIt() {
+        String initial = rentalService.getRentalsVersion();
+        assertThat(rentalService.getRentalsVersion()).isEqualTo(initial);
+
+        rentalService.updateRental(rentalId, new UpdateRentalDto(rentalId, "house", 80.0, 900.0, null, "bigger", null));
+        entityManager.flush();
+        String updated = rentalService.getRentalsVersion();
+        assertThat(updated).isNotEqualTo(initial);
+
+        // A rental written by another node, through the database only
+        RentalEntity other = new RentalEntity("studio", 20.0, 400.0, "description");
+        other.setPicture("picture.jpg");
+        other.setOwner(entityManager.find(RentalEntity.class, rentalId).getOwner());
+        other.setCreated_at(LocalDateTime.of(2020, 1, 1, 0, 0));
+        other.setUpdated_at(LocalDateTime.of(2020, 1, 1, 0, 0));
+        entityManager.persistAndFlush(other);
+        assertThat(rentalService.getRentalsVersion()).isNotEqualTo(updated);
+    }
+}
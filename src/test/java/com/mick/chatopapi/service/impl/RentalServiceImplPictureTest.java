@@ -0,0 +1,87 @@
+package com.mick.chatopapi.service.impl;
+
+import com.mick.chatopapi.entity.RentalEntity;
+import com.mick.chatopapi.image.ContentAddressedImageStore;
+import com.mick.chatopapi.mapper.RentalMapper;
+import com.mick.chatopapi.repository.RentalRepository;
+import com.mick.chatopapi.repository.UserRepository;
+import com.mick.chatopapi.search.RentalSearchIndex;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class RentalServiceImplPictureTest {
+
+    private final RentalRepository rentalRepository = mock(RentalRepository.class);
+    private final ContentAddressedImageStore contentAddressedImageStore = mock(ContentAddressedImageStore.class);
+    private final RentalServiceImpl rentalService = new RentalServiceImpl(rentalRepository, new RentalMapper(),
+            mock(UserRepository.class), mock(RentalSearchIndex.class), mock(RentalImporter.class), contentAddressedImageStore);
+    private final RentalEntity rental = new RentalEntity("flat", 30.0, 500.0, "description");
+
+    @BeforeEach
+    void setUp() throws IOException {
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(new MockHttpServletRequest()));
+        rental.setId(1);
+        rental.setPicture("http://localhost/api/rentals/image/old.jpg");
+        when(rentalRepository.findById(1)).thenReturn(Optional.of(rental));
+        when(contentAddressedImageStore.store(any(InputStream.class), anyLong())).thenReturn("new.jpg");
+    }
+
+    @AfterEach
+    void tearDown() {
+        RequestContextHolder.resetRequestAttributes();
+    }
+
+    @Test
+    void updateRentalPicture_shouldReleaseTheOldPictureOnceTheRentalIsSaved() throws IOException {
+        rentalService.updateRentalPicture(1, picture(), 3);
+
+        InOrder order = inOrder(rentalRepository, contentAddressedImageStore);
+        order.verify(rentalRepository).save(rental);
+        order.verify(contentAddressedImageStore).release("old.jpg");
+        assertThat(rental.getPicture()).endsWith("/api/rentals/image/new.jpg");
+    }
+
+    @Test
+    void updateRentalPicture_shouldReleaseALegacyPictureWhoseUrlIsEncoded() throws IOException {
+        rental.setPicture("http://localhost/api/rentals/image/0b5f1c2e_Ma%20maison.jpg");
+
+        rentalService.updateRentalPicture(1, picture(), 3);
+
+        verify(contentAddressedImageStore).release("0b5f1c2e_Ma maison.jpg");
+    }
+
+    @Test
+    void updateRentalPicture_shouldKeepTheOldPictureWhenTheSaveFails() {
+        when(rentalRepository.save(rental)).thenThrow(new DataAccessResourceFailureException("down"));
+
+        assertThatThrownBy(() -> rentalService.updateRentalPicture(1, picture(), 3))
+                .isInstanceOf(DataAccessResourceFailureException.class);
+
+        verify(contentAddressedImageStore, never()).release("old.jpg");
+    }
+
+    private static InputStream picture() {
+        return new ByteArrayInputStream(new byte[]{1, 2, 3});
+    }
+}
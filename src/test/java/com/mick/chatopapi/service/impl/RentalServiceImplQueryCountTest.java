@@ -0,0 +1,112 @@
+package com.mick.chatopapi.service.impl;
+
+import com.mick.chatopapi.dto.RentalDto;
+import com.mick.chatopapi.dto.RentalsPageResponse;
+import com.mick.chatopapi.entity.RentalEntity;
+import com.mick.chatopapi.entity.UserEntity;
+import com.mick.chatopapi.image.ContentAddressedImageStore;
+import com.mick.chatopapi.mapper.RentalMapper;
+import com.mick.chatopapi.search.RentalSearchIndex;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DataJpaTest(properties = {
+        "spring.jpa.properties.hibernate.generate_statistics=true",
+        "chatop.search.index-dir=target/test-search-index"
+})
+@Import({RentalServiceImpl.class, RentalMapper.class, RentalSearchIndex.class})
+class RentalServiceImplQueryCountTest {
+
+    private static final int RENTAL_COUNT = 5;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private RentalServiceImpl rentalService;
+
+    @MockitoBean
+    private RentalImporter rentalImporter;
+
+    @MockitoBean
+    private ContentAddressedImageStore contentAddressedImageStore;
+
+    private Statistics statistics;
+    private Integer firstRentalId;
+
+    @BeforeEach
+    void setUp() {
+        LocalDateTime now = LocalDateTime.now();
+        for (int i = 0; i < RENTAL_COUNT; i++) {
+            UserEntity owner = new UserEntity("owner" + i + "@test.com", "owner" + i, "hash");
+            owner.setCreated_at(now);
+            owner.setUpdated_at(now);
+            entityManager.persist(owner);
+
+            RentalEntity rental = new RentalEntity("rental" + i, 20.0 + i, 100.0 + i, "description");
+            rental.setPicture("picture.jpg");
+            rental.setOwner(owner);
+            rental.setCreated_at(now.plusMinutes(i));
+            rental.setUpdated_at(now.plusMinutes(i));
+            entityManager.persist(rental);
+            if (firstRentalId == null) {
+                firstRentalId = rental.getId();
+            }
+        }
+        entityManager.flush();
+        entityManager.clear();
+
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+    }
+
+    @Test
+    void streamAllRentals_shouldIssueSingleStatement() {
+        List<RentalDto> rentals = new ArrayList<>();
+        rentalService.streamAllRentals(rentals::add);
+
+        assertThat(rentals).hasSize(RENTAL_COUNT);
+        assertThat(rentals).allSatisfy(rental -> assertThat(rental.ownerId()).isNotNull());
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+    }
+
+    @Test
+    void getRentalsPage_shouldIssueSingleStatementPerPage() {
+        RentalsPageResponse firstPage = rentalService.getRentalsPage(3, null);
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+
+        RentalsPageResponse secondPage = rentalService.getRentalsPage(3, firstPage.nextCursor());
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(2);
+
+        assertThat(firstPage.rentals()).hasSize(3);
+        assertThat(secondPage.rentals()).hasSize(RENTAL_COUNT - 3);
+        assertThat(secondPage.nextCursor()).isNull();
+    }
+
+    @Test
+    void getRentalById_shouldIssueSingleStatement() {
+        RentalDto rental = rentalService.getRentalById(firstRentalId);
+
+        assertThat(rental).isNotNull();
+        assertThat(rental.ownerId()).isNotNull();
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+        assertThat(statistics.getEntityLoadCount()).isZero();
+    }
+}